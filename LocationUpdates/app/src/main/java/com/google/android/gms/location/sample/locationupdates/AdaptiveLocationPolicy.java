@@ -0,0 +1,141 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.location.Location;
+
+import com.google.android.gms.location.LocationRequest;
+
+/**
+ * Chooses how often and how precisely to ask for location, and which fixes are worth acting on.
+ * <p/>
+ * The observed speed, from the fix or from the distance between fixes, selects a mode: still,
+ * walking or riding. Each mode has its own interval, fastest interval and smallest displacement.
+ * Every mode asks for high accuracy: the user waiting at a stop is still, and a wifi or cell fix
+ * tens of meters off would rank the stops around the wrong spot. Still mode saves power with a
+ * long interval and displacement instead.
+ * While moving, the interval is stretched to half the time the device needs to cover the margin
+ * in which the nearest stops cannot change, so fixes are sparse far from any change and dense
+ * close to one. A fix is only passed on once it is at least the displacement threshold away from
+ * the last fix passed on.
+ */
+public class AdaptiveLocationPolicy {
+
+    public static final int MODE_STILL = 0;
+    public static final int MODE_WALKING = 1;
+    public static final int MODE_RIDING = 2;
+
+    // upper speeds of still and walking in m/s; a mode is left only 20% past its bound
+    private static final float[] MODE_SPEEDS = {0.5f, 3f};
+    private static final float HYSTERESIS = 1.2f;
+
+    private static final long MAX_INTERVAL_IN_MILLISECONDS = 30000;
+
+    private static final long[] MIN_INTERVALS = {MAX_INTERVAL_IN_MILLISECONDS, 2000, 1000};
+    private static final long[] FASTEST_INTERVALS = {10000, 1000, 1000};
+    private static final float[] SMALLEST_DISPLACEMENTS = {10, 3, 10};
+
+    // weight of a new speed sample in the running average
+    private static final float SPEED_SMOOTHING = 0.3f;
+
+    private final float displacementThreshold;
+
+    private int mode = MODE_STILL;
+    private float speed;
+    private double stopMargin;
+
+    private Location lastFix;
+    private Location lastAccepted;
+
+    private long requestedInterval;
+    private int requestedMode = -1;
+
+    /**
+     * @param displacementThresholdMeters how far the device has to move before a fix is acted on.
+     */
+    public AdaptiveLocationPolicy(float displacementThresholdMeters) {
+        this.displacementThreshold = displacementThresholdMeters;
+    }
+
+    /**
+     * Sets the distance the device can move before the nearest stops can change, as reported by
+     * the tracker for the last location it ranked. Call {@link #shouldUpdateRequest} after it.
+     */
+    public void setStopMargin(double stopMarginMeters) {
+        this.stopMargin = stopMarginMeters;
+    }
+
+    /**
+     * Records a fix.
+     *
+     * @return true if the fix should be acted on: the first one, or one far enough from the last
+     * one acted on.
+     */
+    public boolean onLocation(Location location) {
+        float sample;
+        if (location.hasSpeed()) {
+            sample = location.getSpeed();
+        } else if (lastFix != null && location.getTime() > lastFix.getTime()) {
+            sample = location.distanceTo(lastFix) * 1000f / (location.getTime() - lastFix.getTime());
+        } else {
+            sample = speed;
+        }
+        speed += (sample - speed) * SPEED_SMOOTHING;
+        lastFix = location;
+
+        updateMode();
+
+        if (lastAccepted != null && location.distanceTo(lastAccepted) < displacementThreshold) {
+            return false;
+        }
+        lastAccepted = location;
+        return true;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return true if the request for the current mode, speed and margin differs enough from the
+     * last one built to be worth re-registering.
+     */
+    public boolean shouldUpdateRequest() {
+        if (mode != requestedMode) {
+            return true;
+        }
+        long interval = interval();
+        return interval * 4 < requestedInterval * 3 || interval * 3 > requestedInterval * 4;
+    }
+
+    public LocationRequest createRequest() {
+        requestedMode = mode;
+        requestedInterval = interval();
+
+        LocationRequest request = new LocationRequest();
+        request.setInterval(requestedInterval);
+        request.setFastestInterval(Math.min(FASTEST_INTERVALS[mode], requestedInterval));
+        request.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        request.setSmallestDisplacement(SMALLEST_DISPLACEMENTS[mode]);
+        return request;
+    }
+
+    private void updateMode() {
+        if (mode > MODE_STILL && speed < MODE_SPEEDS[mode - 1] / HYSTERESIS) {
+            mode--;
+        } else if (mode < MODE_RIDING && speed > MODE_SPEEDS[mode] * HYSTERESIS) {
+            mode++;
+        }
+    }
+
+    private long interval() {
+        long interval = MIN_INTERVALS[mode];
+        if (mode != MODE_STILL && speed > 0) {
+            // half the time it takes to leave the margin at the current speed
+            interval = Math.max(interval, (long) (stopMargin / speed * 500));
+        }
+        return Math.min(interval, MAX_INTERVAL_IN_MILLISECONDS);
+    }
+}
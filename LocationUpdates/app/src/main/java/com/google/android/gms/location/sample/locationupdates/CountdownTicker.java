@@ -0,0 +1,64 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Updates countdowns on the main thread exactly when a shown value changes.
+ * <p/>
+ * Each tick asks the listener to bring its countdowns up to date and to tell when the next one
+ * changes, e.g. the next minute boundary of the soonest ETA, and sleeps until then. Nothing is
+ * re-read or re-parsed, and while no countdown is running the ticker does not wake at all.
+ */
+public class CountdownTicker {
+
+    public interface Listener {
+        /**
+         * Updates the countdowns to the given time.
+         *
+         * @return the time of the next change, or {@link DateUtil#NO_TIME} if nothing counts down.
+         */
+        long onTick(long now);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Listener listener;
+    private boolean running;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            long next = listener.onTick(now);
+            if (running && next != DateUtil.NO_TIME) {
+                handler.postDelayed(this, Math.max(0, next - now));
+            }
+        }
+    };
+
+    public CountdownTicker(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void start() {
+        running = true;
+        reschedule();
+    }
+
+    public void stop() {
+        running = false;
+        handler.removeCallbacks(tick);
+    }
+
+    /**
+     * Ticks now and schedules the next tick again, e.g. after new ETAs are shown. Does nothing
+     * while stopped.
+     */
+    public void reschedule() {
+        if (!running) {
+            return;
+        }
+        handler.removeCallbacks(tick);
+        tick.run();
+    }
+}
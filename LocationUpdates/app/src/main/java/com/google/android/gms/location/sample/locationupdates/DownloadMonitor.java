@@ -0,0 +1,223 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.app.DownloadManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Watches every outstanding {@link DownloadManager} download from one background thread.
+ * <p/>
+ * Progress of all watched downloads is read with a single query per tick. The tick starts fast
+ * and backs off while no bytes arrive. A download is finished when
+ * {@link DownloadManager#ACTION_DOWNLOAD_COMPLETE} arrives for it, or when a tick sees it in a
+ * final state. Polling stops and the receiver is unregistered once nothing is left to watch.
+ * Listener callbacks run on the main thread.
+ */
+public class DownloadMonitor {
+
+    public interface Listener {
+        void onProgress(long downloadId, int downloadedBytes, int totalBytes);
+
+        /**
+         * @param status {@link DownloadManager#STATUS_SUCCESSFUL} or {@link DownloadManager#STATUS_FAILED}.
+         */
+        void onComplete(long downloadId, int status, int reason);
+    }
+
+    private static final long MIN_POLL_INTERVAL_IN_MILLISECONDS = 100;
+    private static final long MAX_POLL_INTERVAL_IN_MILLISECONDS = 2000;
+
+    private final Context context;
+    private final DownloadManager downloadManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // everything below is only touched on the monitor thread
+    private Handler handler;
+    private final HashMap<Long, Listener> listeners = new HashMap<Long, Listener>();
+    private final HashMap<Long, Integer> downloadedBytes = new HashMap<Long, Integer>();
+    private long pollInterval = MIN_POLL_INTERVAL_IN_MILLISECONDS;
+    private boolean receiverRegistered;
+
+    private final BroadcastReceiver completeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            long downloadId = intent.getLongExtra(DownloadManager.EXTRA_DOWNLOAD_ID, -1);
+            if (listeners.containsKey(downloadId)) {
+                query(new long[]{downloadId});
+            }
+        }
+    };
+
+    private final Runnable poll = new Runnable() {
+        @Override
+        public void run() {
+            if (listeners.isEmpty()) {
+                return;
+            }
+
+            long[] ids = new long[listeners.size()];
+            int i = 0;
+            for (Long id : listeners.keySet()) {
+                ids[i++] = id;
+            }
+
+            boolean progressed = query(ids);
+
+            pollInterval = progressed ? MIN_POLL_INTERVAL_IN_MILLISECONDS
+                    : Math.min(pollInterval * 2, MAX_POLL_INTERVAL_IN_MILLISECONDS);
+            schedule();
+        }
+    };
+
+    public DownloadMonitor(Context context, DownloadManager downloadManager) {
+        this.context = context.getApplicationContext();
+        this.downloadManager = downloadManager;
+    }
+
+    public void watch(final long downloadId, final Listener listener) {
+        if (handler == null) {
+            HandlerThread thread = new HandlerThread("download-monitor");
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                listeners.put(downloadId, listener);
+
+                if (!receiverRegistered) {
+                    context.registerReceiver(completeReceiver,
+                            new IntentFilter(DownloadManager.ACTION_DOWNLOAD_COMPLETE), null, handler);
+                    receiverRegistered = true;
+                }
+
+                pollInterval = MIN_POLL_INTERVAL_IN_MILLISECONDS;
+                handler.removeCallbacks(poll);
+                handler.post(poll);
+            }
+        });
+    }
+
+    /**
+     * Reads the given downloads and reports progress and completion.
+     *
+     * @return true if any download received bytes since the last query.
+     */
+    private boolean query(long[] ids) {
+        boolean progressed = false;
+        HashSet<Long> missing = new HashSet<Long>();
+        for (long id : ids) {
+            missing.add(id);
+        }
+
+        Cursor cursor = downloadManager.query(new DownloadManager.Query().setFilterById(ids));
+        if (cursor == null) {
+            return false;
+        }
+
+        try {
+            int idColumn = cursor.getColumnIndex(DownloadManager.COLUMN_ID);
+            int statusColumn = cursor.getColumnIndex(DownloadManager.COLUMN_STATUS);
+            int reasonColumn = cursor.getColumnIndex(DownloadManager.COLUMN_REASON);
+            int bytesColumn = cursor.getColumnIndex(DownloadManager.COLUMN_BYTES_DOWNLOADED_SO_FAR);
+            int totalColumn = cursor.getColumnIndex(DownloadManager.COLUMN_TOTAL_SIZE_BYTES);
+
+            while (cursor.moveToNext()) {
+                final long id = cursor.getLong(idColumn);
+                final int status = cursor.getInt(statusColumn);
+                final int reason = cursor.getInt(reasonColumn);
+                final int bytes = cursor.getInt(bytesColumn);
+                final int total = cursor.getInt(totalColumn);
+
+                final Listener listener = listeners.get(id);
+                missing.remove(id);
+                if (listener == null) {
+                    continue;
+                }
+
+                Integer previousBytes = downloadedBytes.put(id, bytes);
+                if (previousBytes == null || previousBytes != bytes) {
+                    progressed = true;
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onProgress(id, bytes, total);
+                        }
+                    });
+                }
+
+                if (status == DownloadManager.STATUS_SUCCESSFUL || status == DownloadManager.STATUS_FAILED) {
+                    listeners.remove(id);
+                    downloadedBytes.remove(id);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onComplete(id, status, reason);
+                        }
+                    });
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // removed from the download manager, e.g. cancelled from the notification
+        for (final long id : missing) {
+            final Listener listener = listeners.remove(id);
+            downloadedBytes.remove(id);
+            if (listener != null) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onComplete(id, DownloadManager.STATUS_FAILED, DownloadManager.ERROR_UNKNOWN);
+                    }
+                });
+            }
+        }
+
+        if (listeners.isEmpty() && receiverRegistered) {
+            context.unregisterReceiver(completeReceiver);
+            receiverRegistered = false;
+        }
+
+        return progressed;
+    }
+
+    /**
+     * Stops watching and ends the monitor thread. Downloads keep running in the download manager.
+     */
+    public void shutdown() {
+        if (handler == null) {
+            return;
+        }
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                listeners.clear();
+                downloadedBytes.clear();
+                if (receiverRegistered) {
+                    context.unregisterReceiver(completeReceiver);
+                    receiverRegistered = false;
+                }
+                handler.getLooper().quit();
+            }
+        });
+    }
+
+    private void schedule() {
+        if (!listeners.isEmpty()) {
+            handler.postDelayed(poll, pollInterval);
+        }
+    }
+}
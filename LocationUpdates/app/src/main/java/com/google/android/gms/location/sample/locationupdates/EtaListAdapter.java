@@ -0,0 +1,134 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * Shows the merged ETAs of each stop group, one row per group. Groups are matched by the ID of
+ * their first stop, and a row is only rebound when one of its ETA rows changed.
+ * <p/>
+ * Minutes left are counted from the time of the last {@link #tick}, so rows bound at different
+ * moments agree, and a tick rebinds only the rows whose minutes changed. Those are rebound with a
+ * payload, in their own holder, so the item animator does not cross-fade them every minute.
+ */
+public class EtaListAdapter extends ListAdapter<RefreshEngine.EtaGroup, EtaListAdapter.ViewHolder> {
+
+    private static final DiffUtil.ItemCallback<RefreshEngine.EtaGroup> DIFF =
+            new DiffUtil.ItemCallback<RefreshEngine.EtaGroup>() {
+                @Override
+                public boolean areItemsTheSame(RefreshEngine.EtaGroup oldItem, RefreshEngine.EtaGroup newItem) {
+                    return oldItem.getStop().getStopID().equals(newItem.getStop().getStopID());
+                }
+
+                @Override
+                public boolean areContentsTheSame(RefreshEngine.EtaGroup oldItem, RefreshEngine.EtaGroup newItem) {
+                    return oldItem.getStop().getDisplayName().equals(newItem.getStop().getDisplayName())
+                            && sameEtas(oldItem.getEtas(), newItem.getEtas());
+                }
+            };
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+
+        final TextView text;
+
+        ViewHolder(TextView text) {
+            super(text);
+            this.text = text;
+        }
+    }
+
+    private static final Object PAYLOAD_TICK = new Object();
+
+    private long now = System.currentTimeMillis();
+
+    public EtaListAdapter() {
+        super(DIFF);
+    }
+
+    /**
+     * Moves the countdowns to the given time.
+     *
+     * @return the next time a shown minute value changes, or {@link DateUtil#NO_TIME}.
+     */
+    public long tick(long now) {
+        long next = DateUtil.NO_TIME;
+
+        List<RefreshEngine.EtaGroup> groups = getCurrentList();
+        for (int i = 0; i < groups.size(); i++) {
+            boolean changed = false;
+            for (StopEta stopEta : groups.get(i).getEtas()) {
+                long eta = stopEta.getEta();
+                if (eta == DateUtil.NO_TIME) {
+                    continue;
+                }
+                if (DateUtil.minutesUntil(eta, this.now) != DateUtil.minutesUntil(eta, now)) {
+                    changed = true;
+                }
+
+                long change = DateUtil.nextMinuteChange(eta, now);
+                if (change != DateUtil.NO_TIME && (next == DateUtil.NO_TIME || change < next)) {
+                    next = change;
+                }
+            }
+
+            if (changed) {
+                notifyItemChanged(i, PAYLOAD_TICK);
+            }
+        }
+
+        this.now = now;
+        return next;
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return new ViewHolder((TextView) LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.eta_item, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        bind(holder, getItem(position));
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_TICK)) {
+            // only the minutes moved; the row keeps its holder and is not animated
+            bind(holder, getItem(position));
+        } else {
+            super.onBindViewHolder(holder, position, payloads);
+        }
+    }
+
+    private void bind(ViewHolder holder, RefreshEngine.EtaGroup group) {
+        StringBuilder etaString = new StringBuilder(group.getStop().getDisplayName());
+        for (StopEta stopEta : group.getEtas()) {
+            etaString.append("\n").append(stopEta.getDisplayText(now));
+        }
+
+        holder.text.setText(etaString);
+    }
+
+    private static boolean sameEtas(List<StopEta> a, List<StopEta> b) {
+        if (a == b) {
+            return true;
+        }
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i) && !a.get(i).hasSameContents(b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,115 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.content.Context;
+import android.os.Environment;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically fetches the ETAs of the stops the user usually looks at around this time of day,
+ * and of the last nearby stops shown, into the ETA store while the app is in the background. The
+ * next launch shows them at once and revalidates them; see {@link StopUsage} and
+ * {@link EtaPrefetcher}. Stops the {@link StopCatalogDatabase} no longer has, gone from a newer
+ * catalog, are skipped.
+ * <p/>
+ * Runs only on a network and with the battery not low. It does not wait for the device to be
+ * idle, which would hold it off through the commute hours the stops are looked up in.
+ */
+public class EtaPrefetchWorker extends Worker {
+
+    private static final String WORK_NAME = "eta-prefetch-2";
+    // scheduled with a device idle constraint, which KEEP would never drop
+    private static final String OLD_WORK_NAME = "eta-prefetch";
+
+    private static final long PREFETCH_INTERVAL_IN_MINUTES = 30;
+
+    /**
+     * Usual stops for the time of day, and the closest of the last nearby stops, fetched per run.
+     */
+    private static final int LIKELY_STOP_COUNT = 6;
+    private static final int NEARBY_STOP_COUNT = 6;
+
+    private static final long PREFETCH_TIME_LIMIT_IN_MILLISECONDS = 60000;
+
+    /**
+     * Schedules the prefetch unless it is scheduled already.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(EtaPrefetchWorker.class,
+                PREFETCH_INTERVAL_IN_MINUTES, TimeUnit.MINUTES)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager workManager = WorkManager.getInstance(context);
+        workManager.cancelUniqueWork(OLD_WORK_NAME);
+        workManager.enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    public EtaPrefetchWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        File filePath = getApplicationContext().getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+        if (filePath == null) {
+            // external storage is not mounted, try again next period
+            return Result.success();
+        }
+
+        FileStore files = new DirectoryFileStore(filePath);
+        StopUsage stopUsage = StopUsage.load(files.getFile(RefreshEngine.STOP_USAGE_FILE_NAME));
+
+        List<String> nearby = stopUsage.getLastNearby();
+        List<String> stopIds = StopUsage.union(
+                stopUsage.getLikelyStops(System.currentTimeMillis(), LIKELY_STOP_COUNT),
+                nearby.subList(0, Math.min(NEARBY_STOP_COUNT, nearby.size())));
+
+        StopCatalogDatabase catalog = StopCatalogDatabase.getInstance(getApplicationContext());
+        if (catalog.isCurrent(files.getFile(RefreshEngine.BUS_STOP_JSON_FILE_NAME))) {
+            stopIds = inCatalog(catalog, stopIds);
+        }
+        if (stopIds.isEmpty()) {
+            return Result.success();
+        }
+
+        EtaPrefetcher prefetcher = new EtaPrefetcher(files, new UrlConnectionTransport());
+        try {
+            prefetcher.prefetch(stopIds, PREFETCH_TIME_LIMIT_IN_MILLISECONDS);
+            return Result.success();
+        } catch (InterruptedException e) {
+            // stopped by WorkManager, e.g. a constraint no longer holds
+            return Result.retry();
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    private static List<String> inCatalog(StopCatalog catalog, List<String> stopIds) {
+        ArrayList<String> found = new ArrayList<String>(stopIds.size());
+        for (String stopId : stopIds) {
+            if (catalog.findById(stopId) != null) {
+                found.add(stopId);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,63 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Shows the fetch progress of each stop group as a progress bar and a status text. A fetch round
+ * posts a new snapshot per finished request, which only rebinds the group it belongs to.
+ */
+public class EtaProgressAdapter extends ListAdapter<RefreshEngine.FetchProgress, EtaProgressAdapter.ViewHolder> {
+
+    private static final DiffUtil.ItemCallback<RefreshEngine.FetchProgress> DIFF =
+            new DiffUtil.ItemCallback<RefreshEngine.FetchProgress>() {
+                @Override
+                public boolean areItemsTheSame(RefreshEngine.FetchProgress oldItem, RefreshEngine.FetchProgress newItem) {
+                    return oldItem.getName().equals(newItem.getName());
+                }
+
+                @Override
+                public boolean areContentsTheSame(RefreshEngine.FetchProgress oldItem, RefreshEngine.FetchProgress newItem) {
+                    return oldItem.getDone() == newItem.getDone() && oldItem.getTotal() == newItem.getTotal()
+                            && oldItem.getStatus().equals(newItem.getStatus());
+                }
+            };
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+
+        final ProgressBar progressBar;
+        final TextView text;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            progressBar = (ProgressBar) itemView.findViewById(R.id.eta_progress_bar);
+            text = (TextView) itemView.findViewById(R.id.eta_progress_text);
+        }
+    }
+
+    public EtaProgressAdapter() {
+        super(DIFF);
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return new ViewHolder(LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.eta_progress_item, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        RefreshEngine.FetchProgress progress = getItem(position);
+
+        holder.progressBar.setMax(progress.getTotal());
+        holder.progressBar.setProgress(progress.getDone());
+        holder.text.setText(progress.getStatus());
+    }
+}
@@ -0,0 +1,25 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.location.Location;
+
+/**
+ * {@link LocationSource} fed by the activity's fused location callback with the fixes that
+ * {@link AdaptiveLocationPolicy} lets through.
+ */
+public class FusedLocationSource implements LocationSource {
+
+    private Listener listener;
+
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void dispatch(Location location) {
+        if (listener != null) {
+            listener.onLocation(location.getLatitude(), location.getLongitude(),
+                    location.hasBearing() ? location.getBearing() : Double.NaN,
+                    location.hasSpeed() ? location.getSpeed() : Double.NaN);
+        }
+    }
+}
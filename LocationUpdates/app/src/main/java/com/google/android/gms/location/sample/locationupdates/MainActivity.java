@@ -23,8 +23,8 @@ import android.app.DownloadManager;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentSender;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
 import android.location.Location;
 import android.net.Uri;
 import android.os.Build;
@@ -41,6 +41,8 @@ import androidx.annotation.RequiresApi;
 import androidx.core.app.ActivityCompat;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import android.util.Log;
 import android.view.Gravity;
@@ -49,7 +51,6 @@ import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.LinearLayout;
 import android.widget.ProgressBar;
-import android.widget.RelativeLayout;
 import android.widget.Switch;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -70,28 +71,20 @@ import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.json.JSONArray;
 import org.w3c.dom.Text;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.IOException;
 import java.text.DateFormat;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
-import java.util.Timer;
-import java.util.TimerTask;
-
-import static java.lang.Double.parseDouble;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
@@ -123,16 +116,10 @@ public class MainActivity extends AppCompatActivity {
     private static final int REQUEST_CHECK_SETTINGS = 0x1;
 
     /**
-     * The desired interval for location updates. Inexact. Updates may be more or less frequent.
+     * How far the device has to move before a location update is shown and the nearest stops are
+     * ranked again.
      */
-    private static final long UPDATE_INTERVAL_IN_MILLISECONDS = 100;
-
-    /**
-     * The fastest rate for active location updates. Exact. Updates will never be more frequent
-     * than this value.
-     */
-    private static final long FASTEST_UPDATE_INTERVAL_IN_MILLISECONDS =
-            UPDATE_INTERVAL_IN_MILLISECONDS / 2;
+    private static final float LOCATION_DISPLACEMENT_THRESHOLD_IN_METERS = 10;
 
     // Keys for storing activity state in the Bundle.
     private final static String KEY_REQUESTING_LOCATION_UPDATES = "requesting-location-updates";
@@ -140,13 +127,16 @@ public class MainActivity extends AppCompatActivity {
     private final static String KEY_LAST_UPDATED_TIME_STRING = "last-updated-time-string";
 
     private final static String BUS_STOP_JSON_URL = "https://data.etabus.gov.hk/v1/transport/kmb/stop";
-    private final static String BUS_STOP_ETA_JSON_URL = "https://data.etabus.gov.hk/v1/transport/kmb/stop-eta/";
 
-    private final static String BUS_STOP_JSON_FILE_NAME = "stop/busStop";
+    private final static String BUS_STOP_JSON_FILE_NAME = RefreshEngine.BUS_STOP_JSON_FILE_NAME;
     private final static String BUS_STOP_JSON_FILE_TMP_NAME = "stop/busStop_Tmp";
+    private final static String BUS_STOP_SNAPSHOT_FILE_NAME = RefreshEngine.BUS_STOP_SNAPSHOT_FILE_NAME;
+
+    // HTTP validators of the downloaded bus stop JSON
+    private final static String BUS_STOP_PREFERENCES = "bus_stop_json";
+    private final static String KEY_BUS_STOP_ETAG = "etag";
+    private final static String KEY_BUS_STOP_LAST_MODIFIED = "last-modified";
 
-    private final static String STOP_ETA_JSON_FILE_NAME = "eta/ETA_";
-    private final static String STOP_ETA_JSON_FILE_TMP_NAME = "eta/ETA_Tmp_";
     private final static String STOP_ETA_JSON_FOLDER_NAME = "eta";
     private final static String JSON_SUFFIX = ".json";
 
@@ -155,7 +145,15 @@ public class MainActivity extends AppCompatActivity {
     private static boolean autoDownloadEta = true;
     private static boolean autoShowEta = true;
 
-    private final static int closestStopCount = 20;
+    /**
+     * Connect and read timeout of the bus stop data check.
+     */
+    private final static int FETCH_TIMEOUT_IN_MILLISECONDS = 10000;
+
+    /**
+     * How far ahead along the direction of travel the ETAs of the next stops are fetched.
+     */
+    private final static int PREDICTION_HORIZON_IN_SECONDS = 60;
 
     /**
      * Provides access to the Fused Location Provider API.
@@ -172,6 +170,17 @@ public class MainActivity extends AppCompatActivity {
      */
     private LocationRequest mLocationRequest;
 
+    /**
+     * Adapts mLocationRequest to the observed speed and filters out fixes that barely moved.
+     */
+    private final AdaptiveLocationPolicy mLocationPolicy =
+            new AdaptiveLocationPolicy(LOCATION_DISPLACEMENT_THRESHOLD_IN_METERS);
+
+    /**
+     * Passes the fixes let through by mLocationPolicy on to the refresh engine.
+     */
+    private final FusedLocationSource mLocationSource = new FusedLocationSource();
+
     /**
      * Stores the types of location services the client is interested in using. Used for checking
      * settings to determine if the device has optimal location settings.
@@ -222,18 +231,36 @@ public class MainActivity extends AppCompatActivity {
     private String mLastUpdateTime;
 
     DownloadManager downloadManager;
+    DownloadMonitor downloadMonitor;
     long downloadReference;
 
     ProgressBar progressBar;
     //Timer progressTimer;
-    ArrayList<BusStop> closestStop = new ArrayList<BusStop>();
-    ArrayList<BusStop> closestStopMerge = new ArrayList<BusStop>();
+
+    // loads, ranks, fetches and merges off the main thread; results arrive on the UI thread
+    RefreshEngine refreshEngine;
+    FetchEngine fetchEngine;
 
 
     LinearLayout linearLayout;
-    RelativeLayout etaProgressLayout;
-    RelativeLayout etaDataLayout;
-    RelativeLayout busStopLayout;
+    RecyclerView etaProgressList;
+    RecyclerView etaDataList;
+    RecyclerView busStopList;
+
+    // rows are diffed against the previous list, so a refresh only rebinds what changed
+    EtaProgressAdapter etaProgressAdapter = new EtaProgressAdapter();
+    EtaListAdapter etaListAdapter = new EtaListAdapter();
+    StopListAdapter stopListAdapter = new StopListAdapter();
+
+    // counts the shown ETAs down from the cached epoch times, independently of refreshes
+    CountdownTicker countdownTicker;
+
+    // the catalog on disk for lookups by ID, name or area, imported off the main thread
+    StopCatalogDatabase stopCatalogDatabase;
+    ExecutorService databaseExecutor;
+
+    // the saved last result while its rows are shown, marked with its age
+    LastResultSnapshot lastResult;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -260,9 +287,32 @@ public class MainActivity extends AppCompatActivity {
 
 
         linearLayout = (LinearLayout) findViewById(R.id.linear_layout);
-        etaProgressLayout = (RelativeLayout) findViewById(R.id.eta_progress_layout);
-        etaDataLayout = (RelativeLayout) findViewById(R.id.eta_data_layout);
-        busStopLayout = (RelativeLayout) findViewById(R.id.bus_stop_layout);
+        etaProgressList = (RecyclerView) findViewById(R.id.eta_progress_list);
+        etaDataList = (RecyclerView) findViewById(R.id.eta_data_list);
+        busStopList = (RecyclerView) findViewById(R.id.bus_stop_list);
+
+        etaProgressList.setLayoutManager(new LinearLayoutManager(this));
+        etaProgressList.setAdapter(etaProgressAdapter);
+        etaDataList.setLayoutManager(new LinearLayoutManager(this));
+        // bounded in the layout, so new ETAs never change its size
+        etaDataList.setHasFixedSize(true);
+        etaDataList.setAdapter(etaListAdapter);
+        busStopList.setLayoutManager(new LinearLayoutManager(this));
+        busStopList.setAdapter(stopListAdapter);
+
+        countdownTicker = new CountdownTicker(new CountdownTicker.Listener() {
+            @Override
+            public long onTick(long now) {
+                long next = etaListAdapter.tick(now);
+                if (lastResult != null) {
+                    long ageChange = showLastResultAge(now);
+                    if (next == DateUtil.NO_TIME || ageChange < next) {
+                        next = ageChange;
+                    }
+                }
+                return next;
+            }
+        });
 
         autoUpdateLocationSwitch = (Switch) findViewById(R.id.auto_update_location_switch);
         autoDownloadEtaSwitch = (Switch) findViewById(R.id.auto_download_eta_switch);
@@ -288,6 +338,86 @@ public class MainActivity extends AppCompatActivity {
         createLocationRequest();
         buildLocationSettingsRequest();
 
+        downloadManager = (DownloadManager) getSystemService(Context.DOWNLOAD_SERVICE);
+        downloadMonitor = new DownloadMonitor(this, downloadManager);
+
+        Executor uiExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                runOnUiThread(command);
+            }
+        };
+        fetchEngine = new FetchEngine(new UrlConnectionTransport(), 1, FETCH_TIMEOUT_IN_MILLISECONDS, uiExecutor);
+
+        File filePath = MainActivity.this.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+        refreshEngine = new RefreshEngine(new DirectoryFileStore(filePath), Clock.SYSTEM,
+                new UrlConnectionTransport(), uiExecutor,
+                new RefreshEngine.Listener() {
+                    @Override
+                    public void onCatalogLoaded(String generatedTimestamp, StopCatalogDiff diff) {
+                        if (generatedTimestamp != null) {
+                            busStopJSONTextView.setText(DateUtil.returnDatetimeString(generatedTimestamp));
+                        }
+                        if (diff != null) {
+                            progressText.setText(progressText.getText() + "\n" + diff);
+                        }
+                    }
+
+                    @Override
+                    public void onStopsRanked(List<BusStop> stops) {
+                        outputDistanceData(stops);
+                    }
+
+                    @Override
+                    public void onStopMargin(double marginMeters) {
+                        // the margin of the fix just ranked, not of the one before it
+                        mLocationPolicy.setStopMargin(marginMeters);
+                        if (mLocationPolicy.shouldUpdateRequest()) {
+                            updateLocationRequest();
+                        }
+                    }
+
+                    @Override
+                    public void onFetchProgress(List<RefreshEngine.FetchProgress> progress) {
+                        outputEtaProgress(progress);
+                    }
+
+                    @Override
+                    public void onEtasReady(List<RefreshEngine.EtaGroup> groups, long generatedTime) {
+                        if (generatedTime != DateUtil.NO_TIME) {
+                            stopEtaJSONTextView.setText(DateUtil.returnDatetimeString(generatedTime));
+                        } else if (lastResult != null) {
+                            stopEtaJSONTextView.setText("");
+                        }
+                        lastResult = null;
+                        outputEtaData(groups);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        if (e instanceof FileNotFoundException) {
+                            System.out.println("Bus stop json not found");
+                        } else {
+                            System.out.println(e.toString());
+                        }
+                    }
+                });
+        refreshEngine.setLocationSource(mLocationSource);
+        refreshEngine.setMergeSameName(mergeBusStop);
+        refreshEngine.setAutoFetch(autoDownloadEta);
+        refreshEngine.setAutoShow(autoShowEta);
+        refreshEngine.setPredictionHorizon(PREDICTION_HORIZON_IN_SECONDS);
+
+        // what was on screen last time, until the first refresh replaces it row by row
+        showLastResult();
+
+
+        stopCatalogDatabase = StopCatalogDatabase.getInstance(this);
+        databaseExecutor = Executors.newSingleThreadExecutor();
+        importStopCatalog();
+
+        // keeps the ETAs of the usual and last nearby stops warm while the app is closed
+        EtaPrefetchWorker.schedule(this);
 
         autoUpdateLocationSwitchInit();
         autoDownloadEtaSwitchInit();
@@ -295,12 +425,33 @@ public class MainActivity extends AppCompatActivity {
     }
 
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        fetchEngine.shutdown();
+        refreshEngine.shutdown();
+        downloadMonitor.shutdown();
+        databaseExecutor.shutdown();
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
 
         // Remove location updates to save battery.
         stopLocationUpdates();
+
+        countdownTicker.stop();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+
+        // one line of metrics per visit, so field figures survive the process; written next to
+        // the downloaded JSON, in the external files Download directory
+        refreshEngine.dumpMetrics();
     }
 
     @Override
@@ -320,6 +471,8 @@ public class MainActivity extends AppCompatActivity {
             mStopUpdatesButton.performClick();
         }
 
+        countdownTicker.start();
+
         updateUI();
     }
 
@@ -449,6 +602,14 @@ public class MainActivity extends AppCompatActivity {
 
         File file = new File(filePath, BUS_STOP_JSON_FILE_NAME);
 
+        new File(filePath, BUS_STOP_SNAPSHOT_FILE_NAME).delete();
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                stopCatalogDatabase.clear();
+            }
+        });
+
         if (file.exists()) {
             file.delete();
             deleteTextView.setText("Bus Stop JSON deleted.");
@@ -463,6 +624,8 @@ public class MainActivity extends AppCompatActivity {
 
         File filePath = MainActivity.this.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
 
+        refreshEngine.clearEtas();
+
         File dir = new File(filePath, STOP_ETA_JSON_FOLDER_NAME);
         if (dir.isDirectory()) {
             String[] children = dir.list();
@@ -481,42 +644,112 @@ public class MainActivity extends AppCompatActivity {
 
     }
 
+    /**
+     * Revalidates the bus stop JSON with a conditional HEAD request and only downloads it when the
+     * server reports a change, or when there is no local copy yet.
+     */
     public void startDownloadJSONButtonHandler(View view) {
 
-        //https://stackoverflow.com/questions/15542641/how-to-show-download-progress-in-progress-bar-in-android
-        downloadJSON(BUS_STOP_JSON_URL, "Bus Stop Data", "Bus Stop Data", BUS_STOP_JSON_FILE_NAME);
-        checkDownloadStatusFunction(progressText, progressBar, BUS_STOP_JSON_FILE_TMP_NAME, BUS_STOP_JSON_FILE_NAME);
+        File filePath = MainActivity.this.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+        final boolean cached = new File(filePath, BUS_STOP_JSON_FILE_NAME).exists();
+
+        final SharedPreferences preferences = getSharedPreferences(BUS_STOP_PREFERENCES, MODE_PRIVATE);
+        final String etag = preferences.getString(KEY_BUS_STOP_ETAG, null);
+        final String lastModified = preferences.getString(KEY_BUS_STOP_LAST_MODIFIED, null);
+
+        HashMap<String, String> headers = new HashMap<String, String>();
+        if (cached && etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        if (cached && lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+
+        progressText.setText("Checking bus stop data");
+
+        fetchEngine.fetch("HEAD", BUS_STOP_JSON_URL, headers, new FetchEngine.Callback() {
+            @Override
+            public void onResponse(String url, FetchEngine.Response response) {
+                String newEtag = response.getHeader("ETag");
+                String newLastModified = response.getHeader("Last-Modified");
+
+                boolean unchanged = response.getStatus() == 304
+                        || (newEtag != null && newEtag.equals(etag))
+                        || (newEtag == null && newLastModified != null && newLastModified.equals(lastModified));
+
+                if (cached && unchanged) {
+                    progressText.setText("Bus stop data is up to date");
+                    progressBar.setProgress(100);
+                    return;
+                }
 
+                downloadBusStopJSON(newEtag, newLastModified);
+            }
 
+            @Override
+            public void onFailure(String url, IOException e) {
+                downloadBusStopJSON(null, null);
+            }
+        });
     }
 
-    public void startReadJSONButtonHandler(View view) throws Exception {
+    private void downloadBusStopJSON(final String etag, final String lastModified) {
 
+        //https://stackoverflow.com/questions/15542641/how-to-show-download-progress-in-progress-bar-in-android
+        File filePath = MainActivity.this.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+        new File(filePath, BUS_STOP_JSON_FILE_TMP_NAME).delete();
 
-        ArrayList<BusStop> distanceArray = new ArrayList<BusStop>();
-        ArrayList<Object> listData = new ArrayList<Object>();
-        closestStop = new ArrayList<BusStop>();
+        downloadJSON(BUS_STOP_JSON_URL, "Bus Stop Data", "Bus Stop Data", BUS_STOP_JSON_FILE_TMP_NAME);
+        checkDownloadStatusFunction(progressText, progressBar, BUS_STOP_JSON_FILE_TMP_NAME, BUS_STOP_JSON_FILE_NAME, new Runnable() {
+            @Override
+            public void run() {
+                getSharedPreferences(BUS_STOP_PREFERENCES, MODE_PRIVATE).edit()
+                        .putString(KEY_BUS_STOP_ETAG, etag)
+                        .putString(KEY_BUS_STOP_LAST_MODIFIED, lastModified)
+                        .apply();
 
+                refreshEngine.updateCatalog();
+                importStopCatalog();
+            }
+        });
+    }
 
-        try {
+    /**
+     * Imports the bus stop JSON into the stop database in the background, unless it already
+     * holds that file.
+     */
+    private void importStopCatalog() {
+        File filePath = MainActivity.this.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+        final File file = new File(filePath, BUS_STOP_JSON_FILE_NAME);
 
-            convertJsonToArrayList(listData, BUS_STOP_JSON_FILE_NAME, busStopJSONTextView);
-            createDistanceArray(distanceArray, listData);
-            sortDistanceArray(distanceArray);
-            outputDistanceData(distanceArray, closestStop);
-        } catch (FileNotFoundException e) {
-            //busStop1TextView.setText("Bus stop json not found");
-            System.out.println("Bus stop json not found");
-        } catch (Throwable e) {
-            //busStop1TextView.setText(e.toString());
-            System.out.println(e.toString());
-        }
+        databaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!file.exists() || stopCatalogDatabase.isCurrent(file)) {
+                    return;
+                }
 
-        if(autoDownloadEta){
-            downloadEtaButton.performClick();
-        }
+                try {
+                    stopCatalogDatabase.importCatalog(file);
+                } catch (Exception e) {
+                    System.out.println(e.toString());
+                }
+            }
+        });
+    }
+
+    public void startReadJSONButtonHandler(View view) throws Exception {
+
+        double lat = 0;
+        double lon = 0;
 
+        if (mCurrentLocation != null) {
+            lat = mCurrentLocation.getLatitude();
+            lon = mCurrentLocation.getLongitude();
+        }
 
+        // ranks the stops, then downloads their ETAs if auto download is on
+        refreshEngine.refresh(lat, lon);
     }
 
 
@@ -530,68 +763,15 @@ public class MainActivity extends AppCompatActivity {
             autoDownloadEta = false;
         }
 
+        refreshEngine.setAutoFetch(autoDownloadEta);
+
     }
 
 
     @RequiresApi(api = Build.VERSION_CODES.O)
     public void startDownloadEtaJSONButtonHandler(View view) throws Exception {
 
-
-        ArrayList<TextView> progressTextArray = new ArrayList<TextView>();
-        ArrayList<ProgressBar> progressBarArray = new ArrayList<ProgressBar>();
-
-        etaProgressLayout.removeAllViews();
-
-        int j = 0;
-        for (int i = 0; i < closestStop.size(); i++) {
-
-            //vvvvvvvvvvvvvvvv show download progress text field
-
-            ProgressBar dummyProgressBar = new ProgressBar(MainActivity.this, null, android.R.attr.progressBarStyleHorizontal);
-            j += 1;
-            dummyProgressBar.setId(j);
-
-            TextView dummyTxt = new TextView(MainActivity.this);
-            j += 1;
-            dummyTxt.setId(j);
-
-            RelativeLayout.LayoutParams paramBar = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.MATCH_PARENT, RelativeLayout.LayoutParams.WRAP_CONTENT);
-            paramBar.addRule(RelativeLayout.BELOW, j - 2);
-            etaProgressLayout.addView(dummyProgressBar, paramBar);
-
-            RelativeLayout.LayoutParams paramText = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.MATCH_PARENT, RelativeLayout.LayoutParams.WRAP_CONTENT);
-            paramText.addRule(RelativeLayout.BELOW, j - 1);
-            etaProgressLayout.addView(dummyTxt, paramText);
-
-            //^^^^^^^^^^^^^^^^^^^^^show download progress text field
-
-
-            //vvvvvvvvvvvvvvvv show download progress text
-
-            try {
-                BusStop busStop = closestStop.get(i);
-
-                String stopID = busStop.getStopID();
-
-                System.out.println(BUS_STOP_ETA_JSON_URL + stopID);
-                downloadJSON(BUS_STOP_ETA_JSON_URL + stopID, stopID + " Stop ETA", stopID + " Stop ETA", STOP_ETA_JSON_FILE_TMP_NAME + stopID);
-
-                checkDownloadStatusFunction(dummyTxt, dummyProgressBar, STOP_ETA_JSON_FILE_TMP_NAME + stopID, STOP_ETA_JSON_FILE_NAME + stopID);
-
-
-            } catch (IndexOutOfBoundsException e) {
-                //etaProgressText1.setText("Closest stop data not found");
-                System.out.println("Closest stop data not found");
-            } catch (Throwable e) {
-                //etaProgressText1.setText(e.toString());
-                System.out.println(e.toString());
-            }
-
-            //^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^show download progress text
-
-
-        }
-
+        refreshEngine.fetchEtas();
     }
 
     public void autoShowEtaSwitchHandler(View view) {
@@ -601,57 +781,18 @@ public class MainActivity extends AppCompatActivity {
             autoShowEta = false;
         }
 
+        refreshEngine.setAutoShow(autoShowEta);
+
     }
 
 
     public void startReadEtaJSONButtonHandler(View view) throws Exception {
 
-        ArrayList<ArrayList<StopEta>> outputEtaArray = new ArrayList<ArrayList<StopEta>>();
-
-        try {
-            for (int i = 0; i < closestStop.size(); i++) {
-                ArrayList<Object> listData = new ArrayList<Object>();
-                ArrayList<StopEta> oneEtaArray = new ArrayList<StopEta>();
-
-
-                BusStop busStop = closestStop.get(i);
-                String stopID = busStop.getStopID();
-                convertJsonToArrayList(listData, STOP_ETA_JSON_FILE_NAME + stopID, stopEtaJSONTextView);
-                createEtaArray(oneEtaArray, listData, true);
-                outputEtaArray.add(oneEtaArray);
-
-
-            }
-        } catch (IndexOutOfBoundsException e) {
-            //eta1TextView.setText("Closest stop data not found");
-            System.out.println("Closest stop data not found");
-        } catch (JSONException e) {
-            System.out.println("JSON exception");
-        } catch (Throwable e) {
-            //eta1TextView.setText((e.toString()));
-            System.out.println("output one eta");
-            System.out.println(e.toString());
-        }
-
-
-        try {
-
-            closestStopMerge = (ArrayList) closestStop.clone();
-
-            // there are different stopID but same stopName. Merge same stopName to one
-            if (mergeBusStop == true) {
-                mergeBusStopArray(outputEtaArray);
-            }
-
-            outputEtaData(outputEtaArray);
-
-        } catch (Throwable e) {
-            //eta1TextView.setText((e.toString()));
-
-            System.out.println("output eta");
-            System.out.println(e.toString());
-        }
+        refreshEngine.showEtas();
+    }
 
+    public void showMetricsButtonHandler(View view) {
+        startActivity(new Intent(this, MetricsActivity.class));
     }
 
 
@@ -686,23 +827,25 @@ public class MainActivity extends AppCompatActivity {
      * interval (5 seconds), the Fused Location Provider API returns location updates that are
      * accurate to within a few feet.
      * <p/>
-     * These settings are appropriate for mapping applications that show real-time location
-     * updates.
+     * Interval, priority and smallest displacement come from {@link AdaptiveLocationPolicy}. The
+     * first request assumes the device is still; it is replaced as the observed speed changes.
      */
     private void createLocationRequest() {
-        mLocationRequest = new LocationRequest();
-
-        // Sets the desired interval for active location updates. This interval is
-        // inexact. You may not receive updates at all if no location sources are available, or
-        // you may receive them slower than requested. You may also receive updates faster than
-        // requested if other applications are requesting location at a faster interval.
-        mLocationRequest.setInterval(UPDATE_INTERVAL_IN_MILLISECONDS);
+        mLocationRequest = mLocationPolicy.createRequest();
+    }
 
-        // Sets the fastest rate for active location updates. This interval is exact, and your
-        // application will never receive updates faster than this value.
-        mLocationRequest.setFastestInterval(FASTEST_UPDATE_INTERVAL_IN_MILLISECONDS);
+    /**
+     * Replaces the active location request with one fitting the current speed. Requesting updates
+     * again with the same callback replaces the earlier request.
+     */
+    private void updateLocationRequest() {
+        mLocationRequest = mLocationPolicy.createRequest();
 
-        mLocationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        if (mRequestingLocationUpdates) {
+            //noinspection MissingPermission
+            mFusedLocationClient.requestLocationUpdates(mLocationRequest,
+                    mLocationCallback, Looper.myLooper());
+        }
     }
 
     /**
@@ -714,9 +857,23 @@ public class MainActivity extends AppCompatActivity {
             public void onLocationResult(LocationResult locationResult) {
                 super.onLocationResult(locationResult);
 
-                mCurrentLocation = locationResult.getLastLocation();
-                mLastUpdateTime = DateFormat.getTimeInstance().format(new Date());
-                updateLocationUI();
+                Location location = locationResult.getLastLocation();
+                if (location == null) {
+                    return;
+                }
+
+                // fixes within the displacement threshold change neither the UI nor the stops
+                if (mLocationPolicy.onLocation(location)) {
+                    mCurrentLocation = location;
+                    mLastUpdateTime = DateFormat.getTimeInstance().format(new Date());
+                    updateLocationUI();
+
+                    mLocationSource.dispatch(location);
+                }
+
+                if (mLocationPolicy.shouldUpdateRequest()) {
+                    updateLocationRequest();
+                }
             }
         };
     }
@@ -829,8 +986,6 @@ public class MainActivity extends AppCompatActivity {
 
     private void downloadJSON(String url, String title, String description, String subPath) {
 
-        downloadManager = (DownloadManager) getSystemService(Context.DOWNLOAD_SERVICE);
-
         Uri uri = Uri.parse(url); // Path where you want to download file.
         DownloadManager.Request request = new DownloadManager.Request(uri);
         request.setTitle(title);
@@ -848,20 +1003,10 @@ public class MainActivity extends AppCompatActivity {
 
     }
 
-    private int DownloadStatus(Cursor cursor) {
+    private String downloadStatusText(int status, int reason) {
 
         //https://www.codeproject.com/articles/1112730/android-download-manager-tutorial-how-to-download
 
-        //column for download  status
-        int columnIndex = cursor.getColumnIndex(DownloadManager.COLUMN_STATUS);
-        int status = cursor.getInt(columnIndex);
-        //column for reason code if the download failed or paused
-        int columnReason = cursor.getColumnIndex(DownloadManager.COLUMN_REASON);
-        int reason = cursor.getInt(columnReason);
-        //get the download filename
-        //int filenameIndex = cursor.getColumnIndex(DownloadManager.COLUMN_LOCAL_FILENAME);
-        //String filename = cursor.getString(filenameIndex);
-
         String statusText = "";
         String reasonText = "";
 
@@ -926,56 +1071,38 @@ public class MainActivity extends AppCompatActivity {
                 break;
         }
 
-        return status;
+        return statusText + " " + reasonText;
 
 
     }
 
 
-    private void checkDownloadStatusFunction(final TextView progressText, final ProgressBar progressBar, final String tmpFileName, final String realFileName) {
+    private void checkDownloadStatusFunction(final TextView progressText, final ProgressBar progressBar, final String tmpFileName, final String realFileName, final Runnable onDownloaded) {
 
         // update progressbar
-        final long downloadReferenceInUse = downloadReference;
-
-        final Timer progressTimer = new Timer();
-        progressTimer.schedule(new TimerTask() {
+        downloadMonitor.watch(downloadReference, new DownloadMonitor.Listener() {
             @Override
-            public void run() {
-                DownloadManager.Query downloadQuery = new DownloadManager.Query();
-                downloadQuery.setFilterById(downloadReferenceInUse);
+            public void onProgress(long downloadId, int downloadedBytes, int totalBytes) {
+                float downloadProgress = totalBytes > 0 ? downloadedBytes * 100f / totalBytes : 0;
 
-                final Cursor cursor = downloadManager.query(downloadQuery);
+                progressText.setText(downloadedBytes + " bytes\n" + totalBytes + " bytes\n" + downloadProgress + "%");
+                progressBar.setProgress((int) downloadProgress);
+            }
 
-                if (cursor.moveToFirst()) { // this "if" is crucial to prevent a kind of error
-                    final int downloadedBytes = cursor.getInt(cursor.getColumnIndex(DownloadManager.COLUMN_BYTES_DOWNLOADED_SO_FAR));
-                    final int totalBytes = cursor.getInt(cursor.getColumnIndex(DownloadManager.COLUMN_TOTAL_SIZE_BYTES)); // integer is enough for files under 2GB
-                    final String downloadPath = cursor.getString(cursor.getColumnIndex(DownloadManager.COLUMN_URI));
+            @Override
+            public void onComplete(long downloadId, int status, int reason) {
+                progressText.setText(progressText.getText() + "\n" + downloadStatusText(status, reason));
 
-                    int downloadStatus = DownloadStatus(cursor);
+                if (status == DownloadManager.STATUS_SUCCESSFUL) {
                     removeTmpFile(tmpFileName, realFileName);
+                    progressBar.setProgress(100);
 
-
-                    cursor.close();
-
-                    final float downloadProgress = downloadedBytes * 100f / totalBytes;
-                    //if (downloadProgress > 99.9) // stop repeating timer (it's also useful for error prevention)
-                    if (downloadStatus == DownloadManager.STATUS_SUCCESSFUL) { // stop repeating timer (it's also useful for error prevention)
-                        progressTimer.cancel();
+                    if (onDownloaded != null) {
+                        onDownloaded.run();
                     }
-
-
-                    runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            progressText.setText(downloadPath + "\n" + downloadedBytes + " bytes\n" + totalBytes + " bytes\n" + downloadProgress + "%");
-                            progressBar.setProgress((int) downloadProgress);
-                        }
-                    });
                 }
-
-
             }
-        }, 0, 10);
+        });
     }
 
     private void removeTmpFile(String tmpFileName, String realFileName) {
@@ -995,280 +1122,64 @@ public class MainActivity extends AppCompatActivity {
     }
 
 
-    private static String convertStreamToString(InputStream is) throws Exception {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-        StringBuilder sb = new StringBuilder();
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            sb.append(line).append("\n");
-        }
-        reader.close();
-        return sb.toString();
-    }
-
-
     //////////////////////////////////////////////////////////
     //Array
     //////////////////////////////////////////////////////////
 
-    private void convertJsonToArrayList(ArrayList<Object> listData, String filename, TextView showTextView) throws Exception {
-        //https://stackoverflow.com/questions/31670076/android-download-and-store-json-so-app-can-work-offline
-
-
-        File filePath = MainActivity.this.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
-        File file = new File(filePath, filename);
-
-
-        FileInputStream fileStream = new FileInputStream(file);
-
-
-        String JSONString = convertStreamToString(fileStream);
-        //Make sure you close all streams.
-        fileStream.close();
-
-        //System.out.print(JSONString);
-
-        JSONObject result = new JSONObject(JSONString);
-
-
-        JSONArray jsonArray = result.getJSONArray("data");
-        String timeStamp = result.getString("generated_timestamp");
-
-        String dateTimeString = DateUtil.returnDatetimeString(timeStamp);
-        showTextView.setText(dateTimeString);
-
-
-        //Checking whether the JSON array has some value or not
-        if (jsonArray != null) {
-
-            //Iterating JSON array
-            for (int i = 0; i < jsonArray.length(); i++) {
-
-                //Adding each element of JSON array into ArrayList
-                listData.add(jsonArray.get(i));
-            }
-        }
-    }
-
-    private void createDistanceArray(ArrayList<BusStop> distanceArray, ArrayList<Object> listData) throws JSONException {
-
-
-        double lat = 0;
-        double lon = 0;
-
-        if (mCurrentLocation != null) {
-            lat = mCurrentLocation.getLatitude();
-        }
-        if (mCurrentLocation != null) {
-            lon = mCurrentLocation.getLongitude();
-        }
-
-        for (int i = 0; i < listData.size(); i++) {
-            Object array = listData.get(i);
-
-
-            BusStop busStop = new BusStop();
-            String[] tmpArray = new String[7];
-
-            JSONObject result2 = new JSONObject(array.toString());
-
-            double stopLat = Float.parseFloat(result2.get("lat").toString());
-            double stopLon = Float.parseFloat(result2.get("long").toString());
-
-
-            double distance;
-
-            double latDiff = lat - stopLat;
-            double lonDiff = lon - stopLon;
-
-            distance = Math.sqrt(Math.pow(latDiff, 2) + Math.pow(lonDiff, 2));
-
-            result2.accumulate("distance", distance);
-
-            busStop.setStopID(result2.get("stop").toString());
-            busStop.setNameEn(result2.get("name_en").toString());
-            busStop.setNameTc(result2.get("name_tc").toString());
-            busStop.setNameSc(result2.get("name_sc").toString());
-            busStop.setLat(result2.get("lat").toString());
-            busStop.setLon(result2.get("long").toString());
-            busStop.setDistance(result2.get("distance").toString());
-
-            distanceArray.add(busStop);
-
+    /**
+     * Shows the stops and ETAs saved by the last run with the age of the result. The lists are
+     * empty at this point, so they take the rows at once and draw them in the first frame; later
+     * results are diffed against them and only the rows that changed are rebound. The age is
+     * kept up to date by the countdown ticker until fresh ETAs arrive.
+     */
+    private void showLastResult() {
+        lastResult = refreshEngine.readLastResult();
+        if (lastResult == null) {
+            return;
         }
 
+        showLastResultAge(System.currentTimeMillis());
+        outputDistanceData(lastResult.getStops());
+        outputEtaData(lastResult.getGroups());
     }
 
-    private void createEtaArray(ArrayList<StopEta> etaArray, ArrayList<Object> listData, boolean firstOnly) throws JSONException {
-
-        for (int i = 0; i < listData.size(); i++) {
-            Object array = listData.get(i);
-            StopEta stopEta = new StopEta();
-
-            JSONObject result2 = new JSONObject(array.toString());
-
-            stopEta.setCo(result2.get("co").toString());
-            stopEta.setRoute(result2.get("route").toString());
-            stopEta.setDir(result2.get("dir").toString());
-            stopEta.setServiceType(result2.get("service_type").toString());
-            stopEta.setSeq(result2.get("seq").toString());
-            stopEta.setDestTc(result2.get("dest_tc").toString());
-            stopEta.setDestSc(result2.get("dest_sc").toString());
-            stopEta.setDestEn(result2.get("dest_en").toString());
-            stopEta.setEtaSeq(result2.get("eta_seq").toString());
-            stopEta.setEta(result2.get("eta").toString());
-            stopEta.setRmkTc(result2.get("rmk_tc").toString());
-            stopEta.setRmkSc(result2.get("rmk_sc").toString());
-            stopEta.setRmkEn(result2.get("rmk_en").toString());
-            stopEta.setDataTimestamp(result2.get("data_timestamp").toString());
-
-
-            etaArray.add(stopEta);
-
-
-        }
-
-
-        //orginally there are 3 eta data for one bus route.
-        // if firstOnly = true, show the first eta data only.
-        if (firstOnly == true) {
-
-            // the first one is always unique, so is int i = 1, but not i = 0
-            for (int i = 1; i < etaArray.size(); i++) {
-
-                String etaSeq = etaArray.get(i).getEtaSeq();
-
-                if (Integer.valueOf(etaSeq) != 1) {
-
-                    etaArray.remove(i);
-
-                    i -= 1;
-
-                }
-            }
-        }
+    /**
+     * @return the time the shown age changes next.
+     */
+    private long showLastResultAge(long now) {
+        long time = lastResult.getGeneratedTime() != DateUtil.NO_TIME
+                ? lastResult.getGeneratedTime() : lastResult.getSavedTime();
+        long age = DateUtil.minutesSince(lastResult.getSavedTime(), now);
+        stopEtaJSONTextView.setText(getString(R.string.last_result_age, DateUtil.returnDatetimeString(time), age));
 
+        return DateUtil.nextMinuteChangeSince(lastResult.getSavedTime(), now);
     }
 
-    private void outputEtaData(ArrayList<ArrayList<StopEta>> outputEtaArray) {
-
-
-        etaDataLayout.removeAllViews();
-
-        String etaString = "";
-        String tmpString = "";
-
-        ArrayList<TextView> etaDataTextArray = new ArrayList<TextView>();
-        for (int i = 0; i < closestStopMerge.size(); i++) {
-
-
-            //vvvvvvvvvvvvvvvv add text field
-            TextView dummyTxt = new TextView(MainActivity.this);
-            dummyTxt.setId(i + 1);
-
-
-            RelativeLayout.LayoutParams param = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.WRAP_CONTENT, RelativeLayout.LayoutParams.WRAP_CONTENT);
-            param.addRule(RelativeLayout.BELOW, i);
-            etaDataLayout.addView(dummyTxt, param);
-
-            etaDataTextArray.add(dummyTxt);
-
-            //^^^^^^^^^^^^^^^^^^^^^^^^^^^^
-
-
-            //vvvvvvvvvvvvvvvv assign text field value
-
-            BusStop busStop = closestStopMerge.get(i);
-            tmpString = "";
-
-            for (int j = 0; j < outputEtaArray.get(i).size(); j++) {
-                StopEta stopEta = outputEtaArray.get(i).get(j);
-                tmpString += stopEta.toString();
-                tmpString += "\n";
-            }
-
-            etaString = busStop.getNameTc();
-            etaString += "\n";
-            etaString += tmpString;
-
-            //System.out.println(etaString);
-
-
-            dummyTxt.setText(etaString);
-            //^^^^^^^^^^^^^^^^^^^^^^^
-        }
-
-
+    private void outputEtaProgress(List<RefreshEngine.FetchProgress> progress) {
+        etaProgressAdapter.submitList(progress);
     }
 
-    private void outputDistanceData(ArrayList<BusStop> distanceArray, ArrayList<BusStop> closestStop) {
-
-        busStopLayout.removeAllViews();
-
-        for (int i = 0; i < closestStopCount; i++) {
-
-            //vvvvvvv add to array
-            closestStop.add(distanceArray.get(i));
-            //^^^^^^^^^^^^^^^^
-
-
-            //vvvvvvvvvvvvvvv show to text view
-            TextView dummyTxt = new TextView(MainActivity.this);
-            dummyTxt.setId(i + 1);
-
-            RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(RelativeLayout.LayoutParams.FILL_PARENT, RelativeLayout.LayoutParams.WRAP_CONTENT);
-            params.addRule(RelativeLayout.BELOW, i);
-
-            String addText = closestStop.get(i).toString();
-            dummyTxt.setText(addText);
-
-            busStopLayout.addView(dummyTxt, params);
-            //^^^^^^^^^^^^^^^^^^^^
-        }
-
-
-    }
+    private void outputEtaData(List<RefreshEngine.EtaGroup> groups) {
+        final long start = System.nanoTime();
+        etaListAdapter.submitList(groups, new Runnable() {
+            @Override
+            public void run() {
+                PipelineMetrics.VIEW_REBUILD_ETAS.recordSince(start);
 
-    private void sortDistanceArray(ArrayList<BusStop> distanceArray) {
-        // Sort list
-        Collections.sort(distanceArray, new Comparator<BusStop>() {
-            public int compare(BusStop x, BusStop y) {
-                if (parseDouble(x.getDistance()) < parseDouble(y.getDistance())) {
-                    return -1;
-                } else if (parseDouble(x.getDistance()) == parseDouble(y.getDistance())) {
-                    return 0;
-                } else {
-                    return 1;
-                }
+                // the new rows may count down on other boundaries
+                countdownTicker.reschedule();
             }
         });
     }
 
-    private void mergeBusStopArray(ArrayList<ArrayList<StopEta>> outputEtaArray) {
-
-
-        int totalLength = closestStopMerge.size();
-        for (int i = 0; i < totalLength; i++) {
-            BusStop busStop = closestStopMerge.get(i);
-            String previousStopName = busStop.getNameTc();
-            System.out.println("previousStopName" + previousStopName);
-
-            //k = 1 but not k = 0. the first one is always unique, no need to check.
-            for (int k = i + 1; k < totalLength; k++) {
-                String currentStopName = closestStopMerge.get(k).getNameTc();
-                System.out.println("currentStopName" + currentStopName);
-                if (currentStopName.equals(previousStopName)) {
-                    System.out.println("same, delete");
-
-                    outputEtaArray.get(i).addAll(outputEtaArray.get(k));
-
-                    closestStopMerge.remove(k);
-                    outputEtaArray.remove(k);
-                    totalLength -= 1;
-                    k -= 1;
-                }
+    private void outputDistanceData(List<BusStop> closestStop) {
+        final long start = System.nanoTime();
+        stopListAdapter.submitList(closestStop, new Runnable() {
+            @Override
+            public void run() {
+                PipelineMetrics.VIEW_REBUILD_STOPS.recordSince(start);
             }
-        }
+        });
     }
 
     /**
@@ -0,0 +1,97 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.os.Bundle;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Debug screen of the {@link PipelineMetrics}, refreshed every second while shown. The metrics
+ * can be appended to the JSON lines dump, {@link RefreshEngine#METRICS_FILE_NAME} in the external
+ * files Download directory, or reset from here.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private static final long REFRESH_INTERVAL_IN_MILLISECONDS = 1000;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService dumpExecutor = Executors.newSingleThreadExecutor();
+
+    private TextView metricsText;
+    private TextView dumpText;
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            metricsText.setText(PipelineMetrics.REGISTRY.describe());
+            handler.postDelayed(this, REFRESH_INTERVAL_IN_MILLISECONDS);
+        }
+    };
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.metrics_activity);
+
+        metricsText = (TextView) findViewById(R.id.metrics_text);
+        dumpText = (TextView) findViewById(R.id.metrics_dump_text);
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        handler.post(refresh);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        handler.removeCallbacks(refresh);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        dumpExecutor.shutdown();
+    }
+
+    public void dumpMetricsButtonHandler(View view) {
+        File filePath = MetricsActivity.this.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+        final File file = new File(filePath, RefreshEngine.METRICS_FILE_NAME);
+
+        dumpExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String result;
+                try {
+                    PipelineMetrics.REGISTRY.appendJsonLine(file, System.currentTimeMillis());
+                    result = "Appended to " + file;
+                } catch (IOException e) {
+                    result = e.toString();
+                }
+
+                final String text = result;
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        dumpText.setText(text);
+                    }
+                });
+            }
+        });
+    }
+
+    public void resetMetricsButtonHandler(View view) {
+        PipelineMetrics.REGISTRY.reset();
+        metricsText.setText(PipelineMetrics.REGISTRY.describe());
+    }
+}
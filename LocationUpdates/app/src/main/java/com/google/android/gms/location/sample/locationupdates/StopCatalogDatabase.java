@@ -0,0 +1,349 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The bus stop catalog in SQLite, so stops can be looked up by ID, name or area from disk pages
+ * without the whole catalog in the Java heap, e.g. by the prefetch in the background, which has
+ * no catalog loaded. The nearest stop list of the {@link RefreshEngine} is ranked in the heap.
+ * <p/>
+ * Names are matched on keys normalized as by {@link StopGroups#normalize(String)}, English ones
+ * upper cased, each with its own index. Areas are queried through an R*Tree virtual table of the
+ * stop coordinates. SQLite builds without the R*Tree module fall back to an index on latitude
+ * and longitude, which narrows a query to a band of latitude only.
+ * <p/>
+ * The catalog is imported from the downloaded JSON in one transaction, streaming the stops
+ * through prepared inserts, and is tied to that file like a {@link StopCatalogSnapshot}. With
+ * write-ahead logging, queries keep reading the old catalog while a new one is imported.
+ * <p/>
+ * One instance is shared by the process, see {@link #getInstance(Context)}, and stays open.
+ */
+public class StopCatalogDatabase extends SQLiteOpenHelper implements StopCatalog {
+
+    private static final String DATABASE_NAME = "stops.db";
+    private static final int DATABASE_VERSION = 3;
+
+    private static final String KEY_GENERATED_TIMESTAMP = "generated_timestamp";
+    private static final String KEY_SOURCE_MODIFIED = "source_modified";
+    private static final String KEY_SOURCE_LENGTH = "source_length";
+
+    /**
+     * First and largest half width of the box searched around a location by
+     * {@link #findNearest(double, double, int)}.
+     */
+    private static final double NEAREST_FIRST_RADIUS_IN_METERS = 250;
+    private static final double NEAREST_MAX_RADIUS_IN_METERS = 64000;
+
+    private static final String STOP_COLUMNS = "s.stop_id, s.name_en, s.name_tc, s.name_sc, s.lat, s.lon";
+
+    private static final Comparator<BusStop> BY_DISTANCE = new Comparator<BusStop>() {
+        @Override
+        public int compare(BusStop a, BusStop b) {
+            return Double.compare(a.getDistance(), b.getDistance());
+        }
+    };
+
+    private static StopCatalogDatabase instance;
+
+    private volatile boolean rtree;
+
+    private StopCatalogDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    public static synchronized StopCatalogDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new StopCatalogDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE stop ("
+                + "_id INTEGER PRIMARY KEY, "
+                + "stop_id TEXT NOT NULL, "
+                + "name_en TEXT, "
+                + "name_tc TEXT, "
+                + "name_sc TEXT, "
+                + "name_en_key TEXT NOT NULL, "
+                + "name_tc_key TEXT NOT NULL, "
+                + "lat REAL NOT NULL, "
+                + "lon REAL NOT NULL)");
+        db.execSQL("CREATE UNIQUE INDEX stop_stop_id ON stop (stop_id)");
+        db.execSQL("CREATE INDEX stop_name_tc_key ON stop (name_tc_key)");
+        db.execSQL("CREATE INDEX stop_name_en_key ON stop (name_en_key)");
+
+        try {
+            db.execSQL("CREATE VIRTUAL TABLE stop_area USING rtree (id, min_lat, max_lat, min_lon, max_lon)");
+        } catch (SQLiteException e) {
+            // no R*Tree module in this build of SQLite
+            db.execSQL("CREATE INDEX stop_lat_lon ON stop (lat, lon)");
+        }
+
+        db.execSQL("CREATE TABLE catalog (key TEXT PRIMARY KEY, value TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // the catalog is a copy of the JSON, drop it and import again
+        db.execSQL("DROP TABLE IF EXISTS stop");
+        db.execSQL("DROP TABLE IF EXISTS stop_area");
+        db.execSQL("DROP TABLE IF EXISTS catalog");
+        onCreate(db);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        rtree = DatabaseUtils.queryNumEntries(db, "sqlite_master", "name = ?", new String[]{"stop_area"}) > 0;
+    }
+
+    /**
+     * @return true if the catalog was imported from the given JSON file as it is now.
+     */
+    public boolean isCurrent(File source) {
+        return source.exists()
+                && String.valueOf(source.lastModified()).equals(getValue(KEY_SOURCE_MODIFIED))
+                && String.valueOf(source.length()).equals(getValue(KEY_SOURCE_LENGTH));
+    }
+
+    /**
+     * @return the generated_timestamp of the imported catalog, or null if there is none.
+     */
+    public String getGeneratedTimestamp() {
+        return getValue(KEY_GENERATED_TIMESTAMP);
+    }
+
+    /**
+     * Replaces the catalog with the stops of the given JSON file in one transaction. Readers see
+     * either the old catalog or the new one.
+     *
+     * @return the generated_timestamp of the JSON, or null if it has none.
+     */
+    public String importCatalog(File source) throws IOException {
+        long start = System.nanoTime();
+        SQLiteDatabase db = getWritableDatabase();
+
+        final SQLiteStatement insertStop = db.compileStatement("INSERT OR IGNORE INTO stop "
+                + "(stop_id, name_en, name_tc, name_sc, name_en_key, name_tc_key, lat, lon) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        final SQLiteStatement insertArea = rtree
+                ? db.compileStatement("INSERT INTO stop_area VALUES (?, ?, ?, ?, ?)")
+                : null;
+
+        InputStream in = new FileInputStream(source);
+        db.beginTransaction();
+        try {
+            db.delete("stop", null, null);
+            if (rtree) {
+                db.delete("stop_area", null, null);
+            }
+
+            String generatedTimestamp = BusStopCatalogReader.read(in, new BusStopCatalogReader.Sink() {
+                @Override
+                public void onStop(String stopId, String nameEn, String nameTc, String nameSc,
+                                   double lat, double lon) {
+                    insertStop.clearBindings();
+                    insertStop.bindString(1, stopId);
+                    bindString(insertStop, 2, nameEn);
+                    bindString(insertStop, 3, nameTc);
+                    bindString(insertStop, 4, nameSc);
+                    insertStop.bindString(5, nameKey(nameEn, true));
+                    insertStop.bindString(6, nameKey(nameTc, false));
+                    insertStop.bindDouble(7, lat);
+                    insertStop.bindDouble(8, lon);
+
+                    // -1 for a duplicate stop ID, of which the first is kept
+                    long id = insertStop.executeInsert();
+                    if (id != -1 && insertArea != null) {
+                        insertArea.bindLong(1, id);
+                        insertArea.bindDouble(2, lat);
+                        insertArea.bindDouble(3, lat);
+                        insertArea.bindDouble(4, lon);
+                        insertArea.bindDouble(5, lon);
+                        insertArea.executeInsert();
+                    }
+                }
+            });
+
+            putValue(db, KEY_GENERATED_TIMESTAMP, generatedTimestamp);
+            putValue(db, KEY_SOURCE_MODIFIED, String.valueOf(source.lastModified()));
+            putValue(db, KEY_SOURCE_LENGTH, String.valueOf(source.length()));
+
+            db.setTransactionSuccessful();
+            return generatedTimestamp;
+        } finally {
+            db.endTransaction();
+            in.close();
+            insertStop.close();
+            if (insertArea != null) {
+                insertArea.close();
+            }
+            PipelineMetrics.CATALOG_DB_IMPORT.recordSince(start);
+        }
+    }
+
+    public void clear() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete("stop", null, null);
+            if (rtree) {
+                db.delete("stop_area", null, null);
+            }
+            db.delete("catalog", null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public BusStop findById(String stopId) {
+        List<BusStop> stops = query("SELECT " + STOP_COLUMNS + " FROM stop s WHERE s.stop_id = ?",
+                new String[]{stopId}, Double.NaN, Double.NaN);
+        return stops.isEmpty() ? null : stops.get(0);
+    }
+
+    /**
+     * Finds the stops whose Chinese or English name starts with the given text, ignoring white
+     * space differences and, for English, case.
+     *
+     * @return at most limit stops, ordered by Chinese name, with a distance of 0.
+     */
+    public List<BusStop> findByName(String prefix, int limit) {
+        String tcKey = nameKey(prefix, false);
+        String enKey = nameKey(prefix, true);
+
+        // prefix ranges, so each side of the OR can use its index
+        return query("SELECT " + STOP_COLUMNS + " FROM stop s"
+                        + " WHERE (s.name_tc_key >= ? AND s.name_tc_key < ?)"
+                        + " OR (s.name_en_key >= ? AND s.name_en_key < ?)"
+                        + " ORDER BY s.name_tc_key LIMIT " + limit,
+                new String[]{tcKey, tcKey + '\uffff', enKey, enKey + '\uffff'},
+                Double.NaN, Double.NaN);
+    }
+
+    /**
+     * @return the stops inside the box, in no particular order, with their distance from the
+     * given location.
+     */
+    public List<BusStop> findInBox(double minLat, double minLon, double maxLat, double maxLon,
+                                   double lat, double lon) {
+        String[] box = {
+                String.valueOf(minLat), String.valueOf(maxLat),
+                String.valueOf(minLon), String.valueOf(maxLon)};
+
+        if (rtree) {
+            // the R*Tree stores 32 bit floats rounded outwards, the stop columns are exact
+            return query("SELECT " + STOP_COLUMNS + " FROM stop_area a JOIN stop s ON s._id = a.id"
+                            + " WHERE a.max_lat >= CAST(?1 AS REAL) AND a.min_lat <= CAST(?2 AS REAL)"
+                            + " AND a.max_lon >= CAST(?3 AS REAL) AND a.min_lon <= CAST(?4 AS REAL)"
+                            + " AND s.lat BETWEEN CAST(?1 AS REAL) AND CAST(?2 AS REAL)"
+                            + " AND s.lon BETWEEN CAST(?3 AS REAL) AND CAST(?4 AS REAL)",
+                    box, lat, lon);
+        }
+
+        return query("SELECT " + STOP_COLUMNS + " FROM stop s"
+                        + " WHERE s.lat BETWEEN CAST(?1 AS REAL) AND CAST(?2 AS REAL)"
+                        + " AND s.lon BETWEEN CAST(?3 AS REAL) AND CAST(?4 AS REAL)",
+                box, lat, lon);
+    }
+
+    /**
+     * Finds the stops closest to a location with box queries that double in size until enough
+     * stops are inside the circle the box bounds.
+     */
+    @Override
+    public List<BusStop> findNearest(double lat, double lon, int count) {
+        double radiusMeter = NEAREST_FIRST_RADIUS_IN_METERS;
+        while (true) {
+            double radius = radiusMeter / StopIndex.METERS_PER_DEGREE;
+            List<BusStop> found = findInBox(lat - radius, lon - radius, lat + radius, lon + radius, lat, lon);
+
+            ArrayList<BusStop> inside = new ArrayList<BusStop>(found.size());
+            for (BusStop stop : found) {
+                // a stop in a corner of the box may be farther than one outside it
+                if (stop.getDistance() <= radius) {
+                    inside.add(stop);
+                }
+            }
+
+            if (inside.size() >= count || radiusMeter >= NEAREST_MAX_RADIUS_IN_METERS) {
+                Collections.sort(inside, BY_DISTANCE);
+                return inside.size() > count ? inside.subList(0, count) : inside;
+            }
+            radiusMeter *= 2;
+        }
+    }
+
+    /**
+     * @param lat the location distances are measured from, or NaN for a distance of 0.
+     */
+    private List<BusStop> query(String sql, String[] args, double lat, double lon) {
+        long start = System.nanoTime();
+        ArrayList<BusStop> stops = new ArrayList<BusStop>();
+
+        Cursor cursor = getReadableDatabase().rawQuery(sql, args);
+        try {
+            while (cursor.moveToNext()) {
+                double stopLat = cursor.getDouble(4);
+                double stopLon = cursor.getDouble(5);
+                double distance = Double.isNaN(lat) ? 0 : StopIndex.distance(stopLat, stopLon, lat, lon);
+
+                stops.add(new BusStop(cursor.getString(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3), stopLat, stopLon, distance));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        PipelineMetrics.CATALOG_DB_QUERY.recordSince(start);
+        return stops;
+    }
+
+    private String getValue(String key) {
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT value FROM catalog WHERE key = ?",
+                new String[]{key});
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void putValue(SQLiteDatabase db, String key, String value) {
+        db.execSQL("INSERT OR REPLACE INTO catalog (key, value) VALUES (?, ?)", new Object[]{key, value});
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static String nameKey(String name, boolean english) {
+        String key = StopGroups.normalize(name);
+        return english ? key.toUpperCase(Locale.ENGLISH) : key;
+    }
+}
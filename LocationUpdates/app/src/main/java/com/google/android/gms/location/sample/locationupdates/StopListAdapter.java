@@ -0,0 +1,54 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Shows the nearest stops with their distance. Each ranked list replaces the last one through
+ * {@link #submitList}, and only rows whose stop, name or rounded distance changed are rebound.
+ */
+public class StopListAdapter extends ListAdapter<BusStop, StopListAdapter.ViewHolder> {
+
+    private static final DiffUtil.ItemCallback<BusStop> DIFF = new DiffUtil.ItemCallback<BusStop>() {
+        @Override
+        public boolean areItemsTheSame(BusStop oldItem, BusStop newItem) {
+            return oldItem.getStopID().equals(newItem.getStopID());
+        }
+
+        @Override
+        public boolean areContentsTheSame(BusStop oldItem, BusStop newItem) {
+            return oldItem.getDistanceInMeters() == newItem.getDistanceInMeters()
+                    && oldItem.getDisplayName().equals(newItem.getDisplayName());
+        }
+    };
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+
+        final TextView text;
+
+        ViewHolder(TextView text) {
+            super(text);
+            this.text = text;
+        }
+    }
+
+    public StopListAdapter() {
+        super(DIFF);
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return new ViewHolder((TextView) LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.stop_item, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        holder.text.setText(getItem(position).toString());
+    }
+}
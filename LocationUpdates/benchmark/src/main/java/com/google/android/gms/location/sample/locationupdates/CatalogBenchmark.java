@@ -0,0 +1,83 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Loading the stop catalog: reading the kmb/stop JSON, what convertJsonToArrayList used to do,
+ * building the spatial index over it, and mapping the compiled snapshot that replaces both on a
+ * warm start.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CatalogBenchmark {
+
+    @Param({"6000", "50000", "500000"})
+    public int stops;
+
+    private byte[] json;
+    private StopTable table;
+
+    private File directory;
+    private File jsonFile;
+    private File snapshotFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = new PayloadGenerator(stops).stopCatalog(stops, System.currentTimeMillis());
+        table = new StopTable(stops);
+        String generatedTimestamp = BusStopCatalogReader.read(new ByteArrayInputStream(json), table);
+
+        directory = Files.createTempDirectory("catalog").toFile();
+        jsonFile = new File(directory, "busStop");
+        snapshotFile = new File(directory, "busStop.bin");
+
+        OutputStream out = new FileOutputStream(jsonFile);
+        try {
+            out.write(json);
+        } finally {
+            out.close();
+        }
+        StopCatalogSnapshot.write(snapshotFile, jsonFile, table, new StopIndex(table), generatedTimestamp);
+    }
+
+    @TearDown
+    public void tearDown() {
+        snapshotFile.delete();
+        jsonFile.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public StopTable readJson() throws IOException {
+        StopTable table = new StopTable();
+        BusStopCatalogReader.read(new ByteArrayInputStream(json), table);
+        return table;
+    }
+
+    @Benchmark
+    public StopIndex buildIndex() {
+        return new StopIndex(table);
+    }
+
+    @Benchmark
+    public StopCatalogSnapshot openSnapshot() {
+        return StopCatalogSnapshot.open(snapshotFile, jsonFile);
+    }
+}
@@ -0,0 +1,42 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing the API timestamps and formatting them for display, done for every ETA row.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DateUtilBenchmark {
+
+    private final String timestamp = "2024-01-01T08:05:30+08:00";
+    private final String fractionTimestamp = "2024-01-01T00:05:30.123Z";
+    private final long time = DateUtil.parse(timestamp);
+
+    @Benchmark
+    public long parse() {
+        return DateUtil.parse(timestamp);
+    }
+
+    @Benchmark
+    public long parseFraction() {
+        return DateUtil.parse(fractionTimestamp);
+    }
+
+    @Benchmark
+    public String formatTime() {
+        return DateUtil.returnTimeString(time);
+    }
+
+    @Benchmark
+    public String formatDatetime() {
+        return DateUtil.returnDatetimeString(time);
+    }
+}
@@ -0,0 +1,101 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Turning stop-eta responses into the ETA list, what createEtaArray and mergeBusStopArray used
+ * to do: reading one response with the query the app uses and with no filtering, and grouping the
+ * nearest stops by name and merging the ETAs of each group.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EtaBenchmark {
+
+    private static final int CATALOG_STOP_COUNT = 6000;
+    private static final int CLOSEST_STOP_COUNT = 20;
+
+    private static final EtaQuery APP_QUERY = new EtaQuery(EtaQuery.LANGUAGE_TC).setEtaSeqs(1);
+    private static final EtaQuery ALL_QUERY = new EtaQuery(EtaQuery.ALL_LANGUAGES);
+
+    /**
+     * Rows of a stop-eta response.
+     */
+    @Param({"0", "20", "200"})
+    public int rows;
+
+    private final EtaDictionary dictionary = new EtaDictionary();
+    private byte[] json;
+
+    private ArrayList<BusStop> nearestStops;
+    private HashMap<String, ArrayList<StopEta>> etasOfStop;
+
+    @Setup
+    public void setUp() throws IOException {
+        long now = System.currentTimeMillis();
+        PayloadGenerator generator = new PayloadGenerator(rows);
+        json = generator.stopEta(rows, now);
+
+        StopTable table = new StopTable(CATALOG_STOP_COUNT);
+        BusStopCatalogReader.read(
+                new ByteArrayInputStream(generator.stopCatalog(CATALOG_STOP_COUNT, now)), table);
+        StopIndex index = new StopIndex(table);
+
+        int[] stops = new int[CLOSEST_STOP_COUNT];
+        double[] distances = new double[CLOSEST_STOP_COUNT];
+        int found = index.nearest(table.getLat(0), table.getLon(0), CLOSEST_STOP_COUNT, stops, distances);
+
+        // each stop with its own response, by stop ID as the engine looks them up
+        nearestStops = new ArrayList<BusStop>(found);
+        etasOfStop = new HashMap<String, ArrayList<StopEta>>();
+        for (int i = 0; i < found; i++) {
+            BusStop stop = new BusStop(table, stops[i], distances[i]);
+            nearestStops.add(stop);
+
+            ArrayList<StopEta> etas = new ArrayList<StopEta>();
+            StopEtaReader.read(new ByteArrayInputStream(generator.stopEta(rows, now)),
+                    APP_QUERY, dictionary, etas);
+            etasOfStop.put(stop.getStopID(), etas);
+        }
+    }
+
+    @Benchmark
+    public ArrayList<StopEta> readForApp() throws IOException {
+        ArrayList<StopEta> etas = new ArrayList<StopEta>();
+        StopEtaReader.read(new ByteArrayInputStream(json), APP_QUERY, dictionary, etas);
+        return etas;
+    }
+
+    @Benchmark
+    public ArrayList<StopEta> readAll() throws IOException {
+        ArrayList<StopEta> etas = new ArrayList<StopEta>();
+        StopEtaReader.read(new ByteArrayInputStream(json), ALL_QUERY, dictionary, etas);
+        return etas;
+    }
+
+    @Benchmark
+    public int groupAndMerge() {
+        int rows = 0;
+        for (ArrayList<BusStop> group : StopGroups.byName(nearestStops)) {
+            ArrayList<ArrayList<StopEta>> etasOfGroup = new ArrayList<ArrayList<StopEta>>(group.size());
+            for (BusStop stop : group) {
+                etasOfGroup.add(etasOfStop.get(stop.getStopID()));
+            }
+            rows += StopGroups.mergeEtas(etasOfGroup).size();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,106 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Ranking the nearest stops, what createDistanceArray and its sort used to do: a full query of
+ * the index at scattered locations, and the tracker following a walk, where most fixes only
+ * re-rank the band around the last anchor.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class NearestStopBenchmark {
+
+    private static final int CLOSEST_STOP_COUNT = 20;
+    private static final int LOCATION_COUNT = 1024;
+
+    // one fix a second at walking speed
+    private static final double WALK_STEP_METER = 1.5;
+
+    @Param({"6000", "50000", "500000"})
+    public int stops;
+
+    private StopTable table;
+    private StopIndex index;
+
+    private double[] lats;
+    private double[] lons;
+    private int next;
+
+    private final int[] nearestStops = new int[CLOSEST_STOP_COUNT];
+    private final double[] nearestDistances = new double[CLOSEST_STOP_COUNT];
+
+    private NearestStopTracker tracker;
+    private ArrayList<BusStop> trackedStops;
+
+    @Setup
+    public void setUp() throws IOException {
+        table = new StopTable(stops);
+        BusStopCatalogReader.read(
+                new ByteArrayInputStream(new PayloadGenerator(stops).stopCatalog(stops, System.currentTimeMillis())), table);
+        index = new StopIndex(table);
+
+        // locations near stops, as the device is most of the time
+        Random random = new Random(stops);
+        lats = new double[LOCATION_COUNT];
+        lons = new double[LOCATION_COUNT];
+        for (int i = 0; i < LOCATION_COUNT; i++) {
+            int row = random.nextInt(table.size());
+            lats[i] = table.getLat(row) + random.nextGaussian() * 200 / StopIndex.METERS_PER_DEGREE;
+            lons[i] = table.getLon(row) + random.nextGaussian() * 200 / StopIndex.METERS_PER_DEGREE;
+        }
+
+        tracker = new NearestStopTracker(table, index, CLOSEST_STOP_COUNT, 150,
+                new NearestStopTracker.Listener() {
+                    @Override
+                    public void onNearestStopChanged(ArrayList<BusStop> nearestStops) {
+                        trackedStops = nearestStops;
+                    }
+                });
+    }
+
+    @Benchmark
+    public int nearest() {
+        int i = next++ & (LOCATION_COUNT - 1);
+        return index.nearest(lats[i], lons[i], CLOSEST_STOP_COUNT, nearestStops, nearestDistances);
+    }
+
+    @Benchmark
+    public ArrayList<BusStop> nearestBusStops() {
+        int i = next++ & (LOCATION_COUNT - 1);
+        int found = index.nearest(lats[i], lons[i], CLOSEST_STOP_COUNT, nearestStops, nearestDistances);
+
+        ArrayList<BusStop> busStops = new ArrayList<BusStop>(found);
+        for (int j = 0; j < found; j++) {
+            busStops.add(new BusStop(table, nearestStops[j], nearestDistances[j]));
+        }
+        return busStops;
+    }
+
+    @Benchmark
+    public ArrayList<BusStop> trackWalk() {
+        // a walk heading north east from the first location, turning back every 1024 fixes
+        int step = next++ & (2 * LOCATION_COUNT - 1);
+        if (step >= LOCATION_COUNT) {
+            step = 2 * LOCATION_COUNT - 1 - step;
+        }
+        double offset = step * WALK_STEP_METER / StopIndex.METERS_PER_DEGREE / Math.sqrt(2);
+
+        tracker.update(lats[0] + offset, lons[0] + offset);
+        return trackedStops;
+    }
+}
@@ -0,0 +1,176 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.UnsupportedEncodingException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Builds synthetic but realistic KMB API responses for the benchmarks.
+ * <p/>
+ * Stops are laid out like the real network: in clusters along roads around the urban areas of
+ * Hong Kong, most of them in pairs on either side of the road that share a name. Names mix
+ * Chinese and English as the API does, and stop-eta rows come three departures per route and
+ * direction, some without a time but with a remark. The same seed and time give the same
+ * bytes.
+ */
+public class PayloadGenerator {
+
+    // urban centres the clusters are spread around, lat and lon
+    private static final double[][] AREAS = {
+            {22.3193, 114.1694}, {22.2783, 114.1747}, {22.3372, 114.1747}, {22.3700, 114.1130},
+            {22.3808, 114.1889}, {22.4450, 114.0220}, {22.3910, 113.9770}, {22.2840, 114.2230}};
+
+    private static final String[] NAME_PARTS_TC = {
+            "\u9577\u6c99\u7063", "\u65fa\u89d2", "\u5c16\u6c99\u5480", "\u6cb9\u9ebb\u5730",
+            "\u6df1\u6c34\u57d7", "\u4e5d\u9f8d\u57ce", "\u89c0\u5858", "\u6c99\u7530",
+            "\u8343\u7063", "\u5c6f\u9580", "\u5143\u6717", "\u5927\u57d4"};
+    private static final String[] NAME_PARTS_EN = {
+            "CHEUNG SHA WAN", "MONG KOK", "TSIM SHA TSUI", "YAU MA TEI", "SHAM SHUI PO",
+            "KOWLOON CITY", "KWUN TONG", "SHA TIN", "TSUEN WAN", "TUEN MUN", "YUEN LONG", "TAI PO"};
+    private static final String[] SUFFIXES_TC = {"\u8857", "\u9053", "\u5ee3\u5834", "\u7ad9", "\u90a8"};
+    private static final String[] SUFFIXES_EN = {"STREET", "ROAD", "PLAZA", "STATION", "ESTATE"};
+
+    private static final String[] ROUTES = {
+            "1", "1A", "2", "2A", "3C", "5", "6", "6C", "9", "11", "11X", "12", "13D", "14",
+            "15", "26", "28", "40X", "41A", "42C", "59X", "60X", "68X", "74X", "86", "98D",
+            "203E", "215X", "234X", "260X", "271", "281A", "N216", "N241"};
+
+    private final Random random;
+
+    public PayloadGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * @return a kmb/stop response with the given number of stops, generated at the given time.
+     */
+    public byte[] stopCatalog(int stops, long now) {
+        StringBuilder json = new StringBuilder(stops * 220);
+        json.append("{\"type\":\"StopList\",\"version\":\"1.0\",\"generated_timestamp\":\"")
+                .append(timestamp(now)).append("\",\"data\":[");
+
+        int written = 0;
+        while (written < stops) {
+            double[] area = AREAS[random.nextInt(AREAS.length)];
+            // a road through the cluster, stops every 200 to 400 m along it
+            double lat = area[0] + random.nextGaussian() * 0.03;
+            double lon = area[1] + random.nextGaussian() * 0.03;
+            double heading = random.nextDouble() * Math.PI;
+            int roadStops = 5 + random.nextInt(20);
+
+            for (int i = 0; i < roadStops && written < stops; i++) {
+                double step = (200 + random.nextDouble() * 200) / StopIndex.METERS_PER_DEGREE;
+                lat += Math.sin(heading) * step;
+                lon += Math.cos(heading) * step;
+
+                String nameTc = NAME_PARTS_TC[random.nextInt(NAME_PARTS_TC.length)]
+                        + SUFFIXES_TC[random.nextInt(SUFFIXES_TC.length)] + random.nextInt(1000);
+                String nameEn = NAME_PARTS_EN[random.nextInt(NAME_PARTS_EN.length)] + " "
+                        + SUFFIXES_EN[random.nextInt(SUFFIXES_EN.length)] + " (" + random.nextInt(1000) + ")";
+
+                // most stops have a twin on the other side of the road
+                int sides = random.nextInt(10) < 7 ? 2 : 1;
+                for (int side = 0; side < sides && written < stops; side++) {
+                    double offset = side * 25 / StopIndex.METERS_PER_DEGREE;
+                    if (written > 0) {
+                        json.append(',');
+                    }
+                    json.append("{\"stop\":\"").append(stopId())
+                            .append("\",\"name_en\":\"").append(nameEn)
+                            .append("\",\"name_tc\":\"").append(nameTc)
+                            .append("\",\"name_sc\":\"").append(nameTc)
+                            .append("\",\"lat\":\"").append(coordinate(lat - Math.cos(heading) * offset))
+                            .append("\",\"long\":\"").append(coordinate(lon + Math.sin(heading) * offset))
+                            .append("\"}");
+                    written++;
+                }
+            }
+        }
+
+        json.append("]}");
+        return utf8(json);
+    }
+
+    /**
+     * @return a kmb/stop-eta response with the given number of rows, ETAs in the next hour from
+     * the given time.
+     */
+    public byte[] stopEta(int rows, long now) {
+        StringBuilder json = new StringBuilder(rows * 400 + 100);
+        json.append("{\"type\":\"StopETA\",\"version\":\"1.0\",\"generated_timestamp\":\"")
+                .append(timestamp(now)).append("\",\"data\":[");
+
+        int written = 0;
+        while (written < rows) {
+            String route = ROUTES[random.nextInt(ROUTES.length)];
+            String dir = random.nextBoolean() ? "O" : "I";
+            int serviceType = 1 + random.nextInt(3) / 2;
+            int seq = 1 + random.nextInt(40);
+            String destTc = NAME_PARTS_TC[random.nextInt(NAME_PARTS_TC.length)];
+            String destEn = NAME_PARTS_EN[random.nextInt(NAME_PARTS_EN.length)];
+
+            long eta = now + random.nextInt(20 * 60 * 1000);
+            for (int etaSeq = 1; etaSeq <= 3 && written < rows; etaSeq++) {
+                boolean scheduled = random.nextInt(10) == 0;
+                boolean noBus = random.nextInt(30) == 0;
+
+                if (written > 0) {
+                    json.append(',');
+                }
+                json.append("{\"co\":\"KMB\",\"route\":\"").append(route)
+                        .append("\",\"dir\":\"").append(dir)
+                        .append("\",\"service_type\":").append(serviceType)
+                        .append(",\"seq\":").append(seq)
+                        .append(",\"dest_tc\":\"").append(destTc)
+                        .append("\",\"dest_sc\":\"").append(destTc)
+                        .append("\",\"dest_en\":\"").append(destEn)
+                        .append("\",\"eta_seq\":").append(etaSeq)
+                        .append(",\"eta\":");
+                if (noBus) {
+                    json.append("null");
+                } else {
+                    json.append('"').append(timestamp(eta)).append('"');
+                }
+                json.append(",\"rmk_tc\":\"").append(scheduled ? "\u539f\u5b9a\u73ed\u6b21" : "")
+                        .append("\",\"rmk_sc\":\"").append(scheduled ? "\u539f\u5b9a\u73ed\u6b21" : "")
+                        .append("\",\"rmk_en\":\"").append(scheduled ? "Scheduled Bus" : "")
+                        .append("\",\"data_timestamp\":\"").append(timestamp(now))
+                        .append("\"}");
+                written++;
+
+                eta += (5 + random.nextInt(15)) * 60 * 1000;
+            }
+        }
+
+        json.append("]}");
+        return utf8(json);
+    }
+
+    /**
+     * @return the time as the API writes it, e.g. {@code 2024-01-01T08:05:30+08:00}.
+     */
+    public static String timestamp(long time) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX", Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("GMT+08:00"));
+        return format.format(new Date(time));
+    }
+
+    private String stopId() {
+        return String.format(Locale.ENGLISH, "%016X", random.nextLong());
+    }
+
+    private static String coordinate(double value) {
+        return String.format(Locale.ENGLISH, "%.6f", value);
+    }
+
+    private static byte[] utf8(StringBuilder json) {
+        try {
+            return json.toString().getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Replaces a file whole: the new contents are written to a file next to it and renamed over it,
+ * so a reader, or the next launch after a crash, sees either the old file or the new one and
+ * never half of it. Missing parent directories are created.
+ */
+public class AtomicFileWriter {
+
+    public interface Content {
+        /**
+         * Writes the contents. The stream is buffered and closed by {@link #replace}; a wrapper
+         * with a buffer of its own, e.g. a Writer, only needs to be flushed.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private AtomicFileWriter() {
+    }
+
+    public static void replace(File file, Content content) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        boolean written = false;
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile));
+            try {
+                content.writeTo(out);
+            } finally {
+                out.close();
+            }
+            written = tmpFile.renameTo(file);
+        } finally {
+            if (!written) {
+                tmpFile.delete();
+            }
+        }
+
+        if (!written) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    public static void replace(File file, final byte[] bytes) throws IOException {
+        replace(file, new Content() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(bytes);
+            }
+        });
+    }
+}
@@ -0,0 +1,121 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import static java.lang.Math.round;
+
+/**
+ * One row of a {@link StopTable} together with its distance from the query location. The values
+ * are copied when it is created, so it stays valid after the table changes and can be handed to
+ * other threads.
+ */
+public class BusStop {
+
+    /**
+     * Row of a stop that was not read from a {@link StopTable}.
+     */
+    public static final int NO_ROW = -1;
+
+    final int row;
+    final String stopID;
+    final String nameEn;
+    final String nameTc;
+    final String nameSc;
+    final double lat;
+    final double lon;
+    final double distance;
+
+    public BusStop(StopTable table, int row, double distance) {
+        this.row = row;
+        this.stopID = table.getStopID(row);
+        this.nameEn = table.getNameEn(row);
+        this.nameTc = table.getNameTc(row);
+        this.nameSc = table.getNameSc(row);
+        this.lat = table.getLat(row);
+        this.lon = table.getLon(row);
+        this.distance = distance;
+    }
+
+    /**
+     * A stop read from elsewhere than a table, e.g. a database; its row is {@link #NO_ROW}.
+     */
+    public BusStop(String stopID, String nameEn, String nameTc, String nameSc, double lat, double lon,
+                   double distance) {
+        this.row = NO_ROW;
+        this.stopID = stopID;
+        this.nameEn = nameEn;
+        this.nameTc = nameTc;
+        this.nameSc = nameSc;
+        this.lat = lat;
+        this.lon = lon;
+        this.distance = distance;
+    }
+
+    /**
+     * @return the table row the stop was read from; rows change when a catalog update is applied.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    public String getStopID() {
+        return stopID;
+    }
+
+    public String getNameEn() {
+        return nameEn;
+    }
+
+    public String getNameTc() {
+        return nameTc;
+    }
+
+    public String getNameSc() {
+        return nameSc;
+    }
+
+    /**
+     * @return the name shown for the stop: name_tc, or name_en or the stop ID for a stop the
+     * catalog has no Chinese name for.
+     */
+    public String getDisplayName() {
+        if (nameTc != null && nameTc.length() > 0) {
+            return nameTc;
+        }
+        if (nameEn != null && nameEn.length() > 0) {
+            return nameEn;
+        }
+        return stopID;
+    }
+
+    public double getLat() {
+        return lat;
+    }
+
+    public double getLon() {
+        return lon;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public long getDistanceInMeters() {
+        return round(distance * StopIndex.METERS_PER_DEGREE);
+    }
+
+
+    @Override
+    public String toString() {
+       /* return "BusStop{" +
+                "stop='" + getStopID() + '\'' +
+                ", nameEn='" + getNameEn() + '\'' +
+                ", nameTc='" + getNameTc() + '\'' +
+                ", nameSc='" + getNameSc() + '\'' +
+                ", lat='" + getLat() + '\'' +
+                ", lon='" + getLon() + '\'' +
+                ", distance='" + distance + '\'' +
+                '}';*/
+
+        return getDisplayName() + " " + getDistanceInMeters() + "m";
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.google.android.gms.location.sample.locationupdates.JsonPullParser.BEGIN_ARRAY;
+import static com.google.android.gms.location.sample.locationupdates.JsonPullParser.BEGIN_OBJECT;
+import static com.google.android.gms.location.sample.locationupdates.JsonPullParser.NAME;
+
+/**
+ * Reads the KMB stop list response straight into a {@link StopTable}, or any other
+ * {@link Sink}, in one pass.
+ * <pre>
+ * {"type":"StopList", "generated_timestamp":"...", "data":[
+ *     {"stop":"...", "name_en":"...", "name_tc":"...", "name_sc":"...", "lat":"22.3", "long":"114.1"}, ...]}
+ * </pre>
+ */
+public class BusStopCatalogReader {
+
+    /**
+     * Receives the stops as they are read, without the catalog being held in memory.
+     */
+    public interface Sink {
+        void onStop(String stopId, String nameEn, String nameTc, String nameSc, double lat, double lon)
+                throws IOException;
+    }
+
+    /**
+     * @return the generated_timestamp of the response, or null if it has none.
+     */
+    public static String read(InputStream in, final StopTable table) throws IOException {
+        return read(in, new Sink() {
+            @Override
+            public void onStop(String stopId, String nameEn, String nameTc, String nameSc, double lat, double lon) {
+                table.add(stopId, nameEn, nameTc, nameSc, lat, lon);
+            }
+        });
+    }
+
+    /**
+     * @return the generated_timestamp of the response, or null if it has none.
+     */
+    public static String read(InputStream in, Sink sink) throws IOException {
+
+        JsonPullParser parser = new JsonPullParser(in);
+        String generatedTimestamp = null;
+
+        if (parser.next() != BEGIN_OBJECT) {
+            throw new IOException("Bus stop JSON is not an object");
+        }
+
+        while (parser.next() == NAME) {
+            if (parser.nameEquals("generated_timestamp")) {
+                parser.next();
+                generatedTimestamp = parser.getString();
+            } else if (parser.nameEquals("data")) {
+                readStops(parser, sink);
+            } else {
+                parser.skipValue();
+            }
+        }
+
+        return generatedTimestamp;
+    }
+
+    private static void readStops(JsonPullParser parser, Sink sink) throws IOException {
+
+        if (parser.next() != BEGIN_ARRAY) {
+            throw new IOException("Bus stop data is not an array");
+        }
+
+        while (parser.next() == BEGIN_OBJECT) {
+            String stopID = null;
+            String nameEn = null;
+            String nameTc = null;
+            String nameSc = null;
+            double lat = 0;
+            double lon = 0;
+
+            while (parser.next() == NAME) {
+                if (parser.nameEquals("stop")) {
+                    parser.next();
+                    stopID = parser.getString();
+                } else if (parser.nameEquals("name_en")) {
+                    parser.next();
+                    nameEn = parser.getString();
+                } else if (parser.nameEquals("name_tc")) {
+                    parser.next();
+                    nameTc = parser.getString();
+                } else if (parser.nameEquals("name_sc")) {
+                    parser.next();
+                    nameSc = parser.getString();
+                } else if (parser.nameEquals("lat")) {
+                    parser.next();
+                    lat = parser.getDouble();
+                } else if (parser.nameEquals("long")) {
+                    parser.next();
+                    lon = parser.getDouble();
+                } else {
+                    parser.skipValue();
+                }
+            }
+
+            if (stopID != null) {
+                sink.onStop(stopID, nameEn, nameTc, nameSc, lat, lon);
+            }
+        }
+    }
+}
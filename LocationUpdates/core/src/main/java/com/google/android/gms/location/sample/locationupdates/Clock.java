@@ -0,0 +1,17 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Source of the current time, so cache freshness and countdowns can run on a fixed or simulated
+ * time off-device.
+ */
+public interface Clock {
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    long currentTimeMillis();
+}
@@ -0,0 +1,200 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.util.TimeZone;
+
+/**
+ * Parses the ISO-8601 timestamps of the API, e.g. {@code 2019-06-01T15:48:05+08:00}, into epoch
+ * milliseconds, and formats epoch milliseconds in the device time zone.
+ * <p/>
+ * Parsing reads the characters in place without allocating, so timestamps can be parsed once
+ * when a response arrives and only the long kept.
+ */
+public class DateUtil {
+
+    /**
+     * Returned for a missing or malformed timestamp, e.g. the null ETA of a stop without buses.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    public static String returnDatetimeString(String string) {
+        return returnDatetimeString(parse(string));
+    }
+
+    /**
+     * @return yyyy-MM-dd HH:mm in the device time zone, or an empty string for {@link #NO_TIME}.
+     */
+    public static String returnDatetimeString(long time) {
+        if (time == NO_TIME) {
+            return "";
+        }
+
+        long local = time + TimeZone.getDefault().getOffset(time);
+        long days = floorDiv(local, MILLIS_PER_DAY);
+        int minuteOfDay = (int) ((local - days * MILLIS_PER_DAY) / MILLIS_PER_MINUTE);
+
+        // civil date of the day number, see daysFromCivil
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        return year + "-" + twoDigits(month) + "-" + twoDigits(day)
+                + " " + twoDigits(minuteOfDay / 60) + ":" + twoDigits(minuteOfDay % 60);
+    }
+
+    /**
+     * @return HH:mm in the device time zone, or an empty string for {@link #NO_TIME}.
+     */
+    public static String returnTimeString(long time) {
+        if (time == NO_TIME) {
+            return "";
+        }
+
+        long local = time + TimeZone.getDefault().getOffset(time);
+        int minuteOfDay = (int) ((local - floorDiv(local, MILLIS_PER_DAY) * MILLIS_PER_DAY) / MILLIS_PER_MINUTE);
+
+        return twoDigits(minuteOfDay / 60) + ":" + twoDigits(minuteOfDay % 60);
+    }
+
+    /**
+     * @return whole minutes from now until the given time, 0 if it has passed.
+     */
+    public static long minutesUntil(long time, long now) {
+        return time <= now ? 0 : (time - now) / MILLIS_PER_MINUTE;
+    }
+
+    /**
+     * @return the first time after now at which {@link #minutesUntil} of the given time changes,
+     * or {@link #NO_TIME} if it is already 0 and stays 0.
+     */
+    public static long nextMinuteChange(long time, long now) {
+        return time == NO_TIME || time - now < MILLIS_PER_MINUTE
+                ? NO_TIME : now + (time - now) % MILLIS_PER_MINUTE + 1;
+    }
+
+    /**
+     * @return whole minutes from the given time until now, 0 if it is still ahead.
+     */
+    public static long minutesSince(long time, long now) {
+        return minutesUntil(now, time);
+    }
+
+    /**
+     * @return the first time after now at which {@link #minutesSince} of the given time changes.
+     */
+    public static long nextMinuteChangeSince(long time, long now) {
+        return time + (minutesSince(time, now) + 1) * MILLIS_PER_MINUTE;
+    }
+
+    public static long parse(CharSequence text) {
+        return text == null ? NO_TIME : parse(text, 0, text.length());
+    }
+
+    /**
+     * Parses {@code yyyy-MM-ddTHH:mm:ss}, optionally followed by a fraction of a second, and by
+     * {@code Z} or an offset {@code +HH:mm}, {@code +HHmm}. A time without an offset is taken as
+     * UTC.
+     *
+     * @return epoch milliseconds, or {@link #NO_TIME} if the text is not such a timestamp.
+     */
+    public static long parse(CharSequence text, int start, int end) {
+        if (end - start < 19
+                || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-'
+                || (text.charAt(start + 10) != 'T' && text.charAt(start + 10) != ' ')
+                || text.charAt(start + 13) != ':' || text.charAt(start + 16) != ':') {
+            return NO_TIME;
+        }
+
+        int year = digits(text, start, 4);
+        int month = digits(text, start + 5, 2);
+        int day = digits(text, start + 8, 2);
+        int hour = digits(text, start + 11, 2);
+        int minute = digits(text, start + 14, 2);
+        int second = digits(text, start + 17, 2);
+
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return NO_TIME;
+        }
+
+        int i = start + 19;
+
+        int millis = 0;
+        if (i < end && text.charAt(i) == '.') {
+            i++;
+            int scale = 100;
+            while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                millis += (text.charAt(i) - '0') * scale;
+                scale /= 10;
+                i++;
+            }
+        }
+
+        int offsetMinutes = 0;
+        if (i < end) {
+            char c = text.charAt(i);
+            if (c == 'Z') {
+                i++;
+            } else if ((c == '+' || c == '-') && i + 3 <= end) {
+                int offsetHours = digits(text, i + 1, 2);
+                i += 3;
+                if (i < end && text.charAt(i) == ':') {
+                    i++;
+                }
+                int offsetMinute = i + 2 <= end ? digits(text, i, 2) : -1;
+                i += 2;
+                if (offsetHours < 0 || offsetMinute < 0) {
+                    return NO_TIME;
+                }
+                offsetMinutes = (c == '-' ? -1 : 1) * (offsetHours * 60 + offsetMinute);
+            }
+            if (i != end) {
+                return NO_TIME;
+            }
+        }
+
+        long minutes = (daysFromCivil(year, month, day) * 24 + hour) * 60 + minute - offsetMinutes;
+        return minutes * MILLIS_PER_MINUTE + second * 1000 + millis;
+    }
+
+    /**
+     * Days since 1970-01-01 of a date in the proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int digits(CharSequence text, int at, int count) {
+        int value = 0;
+        for (int i = at; i < at + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+
+    private static String twoDigits(int value) {
+        return value < 10 ? "0" + value : String.valueOf(value);
+    }
+}
@@ -0,0 +1,20 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.File;
+
+/**
+ * A {@link FileStore} resolving names against one directory.
+ */
+public class DirectoryFileStore implements FileStore {
+
+    private final File directory;
+
+    public DirectoryFileStore(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public File getFile(String name) {
+        return new File(directory, name);
+    }
+}
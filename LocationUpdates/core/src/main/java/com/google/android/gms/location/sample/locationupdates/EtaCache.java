@@ -0,0 +1,75 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parsed ETAs by stop ID, kept in memory so showing them again costs no network or disk work.
+ * <p/>
+ * An entry is fresh for the TTL given to the constructor. Stale entries are still returned, so
+ * callers can show them at once and revalidate in the background through an
+ * {@link EtaFetcher}. The least recently used entry is evicted once the cache is full.
+ */
+public class EtaCache {
+
+    public static class Entry {
+
+        private final ArrayList<StopEta> etas;
+        private final long generatedTime;
+        private final long fetchedAt;
+
+        public Entry(ArrayList<StopEta> etas, long generatedTime, long fetchedAt) {
+            this.etas = etas;
+            this.generatedTime = generatedTime;
+            this.fetchedAt = fetchedAt;
+        }
+
+        /**
+         * Shared by every reader of the entry, do not modify.
+         */
+        public ArrayList<StopEta> getEtas() {
+            return etas;
+        }
+
+        public long getGeneratedTime() {
+            return generatedTime;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+    }
+
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+
+    public EtaCache(final int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, EtaCache.Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EtaCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the entry of the stop, fresh or stale, or null if there is none.
+     */
+    public synchronized Entry get(String stopId) {
+        return entries.get(stopId);
+    }
+
+    public synchronized void put(String stopId, Entry entry) {
+        entries.put(stopId, entry);
+    }
+
+    public boolean isFresh(Entry entry, long now) {
+        return now - entry.getFetchedAt() < ttlMillis;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
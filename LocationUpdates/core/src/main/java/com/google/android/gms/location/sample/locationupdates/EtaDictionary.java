@@ -0,0 +1,103 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.util.Arrays;
+
+/**
+ * Intern table of the strings that repeat across ETA rows: companies, routes, destinations and
+ * remarks. Each distinct string is kept once and rows refer to it by id, so comparing or grouping
+ * rows by these fields compares ints.
+ * <p/>
+ * Strings can be interned from any CharSequence, e.g. the text buffer of a
+ * {@link JsonPullParser}; a String is only created the first time a text is seen. Ids are stable
+ * for the life of the table, which is shared by every refresh. The table only grows, by the few
+ * hundred distinct strings the nearby routes use.
+ */
+public class EtaDictionary {
+
+    /**
+     * Id of a null string.
+     */
+    public static final int NONE = -1;
+
+    private String[] strings = new String[64];
+    private int[] hashes = new int[64];
+    private int size;
+
+    // open addressing, id + 1 of the string in each slot, 0 for an empty slot
+    private int[] slots = new int[128];
+
+    public synchronized int intern(CharSequence text) {
+        if (text == null) {
+            return NONE;
+        }
+
+        int hash = text instanceof String ? text.hashCode() : hash(text);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && contentEquals(strings[id], text)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == strings.length) {
+            strings = Arrays.copyOf(strings, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        strings[id] = text.toString();
+        hashes[id] = hash;
+
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            slots[slot] = id + 1;
+        }
+        return id;
+    }
+
+    public synchronized String get(int id) {
+        return id == NONE ? null : strings[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    /**
+     * Same value as {@link String#hashCode()} of the text.
+     */
+    private static int hash(CharSequence text) {
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private static boolean contentEquals(String string, CharSequence text) {
+        if (string.length() != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Fetches the ETAs of stops into an {@link EtaCache}, one fetch per stop at a time.
+ * <p/>
+ * A request for a stop that is already being fetched joins the fetch in flight instead of
+ * starting another one, so overlapping refresh rounds cost one API call per stop. The response
+ * is parsed and cached once, then every listener that asked for the stop is told. Listeners run
+ * on the callback executor of the {@link FetchEngine}.
+ */
+public class EtaFetcher {
+
+    public interface Parser {
+        EtaCache.Entry parse(byte[] body, long fetchedAt) throws Exception;
+    }
+
+    public interface Listener {
+        /**
+         * @param cached true if the response was parsed into the cache.
+         */
+        void onResponse(String stopId, FetchEngine.Response response, boolean cached);
+
+        void onFailure(String stopId, IOException e);
+    }
+
+    private final FetchEngine engine;
+    private final EtaCache cache;
+    private final String baseUrl;
+    private final Parser parser;
+    private final Clock clock;
+
+    private final HashMap<String, ArrayList<Listener>> inFlight = new HashMap<String, ArrayList<Listener>>();
+
+    /**
+     * @param baseUrl the stop ETA URL the stop ID is appended to.
+     */
+    public EtaFetcher(FetchEngine engine, EtaCache cache, String baseUrl, Parser parser, Clock clock) {
+        this.engine = engine;
+        this.cache = cache;
+        this.baseUrl = baseUrl;
+        this.parser = parser;
+        this.clock = clock;
+    }
+
+    /**
+     * Fetches the ETAs of a stop, or joins the fetch of it already in flight.
+     *
+     * @return true if a new fetch was started.
+     */
+    public boolean fetch(final String stopId, Listener listener) {
+        synchronized (inFlight) {
+            ArrayList<Listener> listeners = inFlight.get(stopId);
+            if (listeners != null) {
+                listeners.add(listener);
+                PipelineMetrics.ETA_FETCH_JOINED.increment();
+                return false;
+            }
+
+            listeners = new ArrayList<Listener>();
+            listeners.add(listener);
+            inFlight.put(stopId, listeners);
+        }
+
+        PipelineMetrics.ETA_FETCH_STARTED.increment();
+        final long start = System.nanoTime();
+        engine.fetch(baseUrl + stopId, new FetchEngine.Callback() {
+            @Override
+            public void onResponse(String url, FetchEngine.Response response) {
+                PipelineMetrics.ETA_FETCH.recordSince(start);
+                PipelineMetrics.ETA_FETCH_BYTES.record(response.getBody().length);
+
+                boolean cached = false;
+                if (response.isSuccessful()) {
+                    try {
+                        cache.put(stopId, parser.parse(response.getBody(), clock.currentTimeMillis()));
+                        cached = true;
+                    } catch (Exception e) {
+                        // reported as not cached
+                    }
+                }
+
+                for (Listener listener : finish(stopId)) {
+                    listener.onResponse(stopId, response, cached);
+                }
+            }
+
+            @Override
+            public void onFailure(String url, IOException e) {
+                PipelineMetrics.ETA_FETCH_FAILED.increment();
+
+                for (Listener listener : finish(stopId)) {
+                    listener.onFailure(stopId, e);
+                }
+            }
+        });
+        return true;
+    }
+
+    public boolean isFetching(String stopId) {
+        synchronized (inFlight) {
+            return inFlight.containsKey(stopId);
+        }
+    }
+
+    public String getUrl(String stopId) {
+        return baseUrl + stopId;
+    }
+
+    private ArrayList<Listener> finish(String stopId) {
+        synchronized (inFlight) {
+            return inFlight.remove(stopId);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the ETAs of stops the user is likely to look at into the ETA store, the files a
+ * {@link RefreshEngine} shows before its first fetch, so opening the app shows them without
+ * waiting for the network. Meant for a background job: {@link #prefetch} blocks until the
+ * responses are in or the time is up.
+ * <p/>
+ * A response is only saved if it parses, and replaces the saved one whole, see
+ * {@link AtomicFileWriter}.
+ */
+public class EtaPrefetcher {
+
+    private static final int PREFETCH_CONCURRENCY = 2;
+    private static final int PREFETCH_TIMEOUT_IN_MILLISECONDS = 10000;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final FileStore files;
+    private final FetchEngine fetchEngine;
+    private final EtaDictionary dictionary = new EtaDictionary();
+    private final EtaQuery query = new EtaQuery(EtaQuery.LANGUAGE_TC);
+
+    public EtaPrefetcher(FileStore files, FetchEngine.Transport transport) {
+        this.files = files;
+        this.fetchEngine = new FetchEngine(transport, PREFETCH_CONCURRENCY, PREFETCH_TIMEOUT_IN_MILLISECONDS, DIRECT);
+    }
+
+    /**
+     * Fetches and saves the ETAs of the stops.
+     *
+     * @return the stops whose ETAs were saved; fewer than asked for if some failed or the time ran
+     * out.
+     */
+    public List<String> prefetch(List<String> stopIds, long timeoutMillis) throws InterruptedException {
+        final CountDownLatch remaining = new CountDownLatch(stopIds.size());
+        final List<String> saved = new ArrayList<String>();
+        final AtomicInteger failed = new AtomicInteger();
+
+        for (final String stopId : stopIds) {
+            fetchEngine.fetch(RefreshEngine.BUS_STOP_ETA_JSON_URL + stopId, new FetchEngine.Callback() {
+                @Override
+                public void onResponse(String url, FetchEngine.Response response) {
+                    try {
+                        if (response.isSuccessful() && save(stopId, response.getBody())) {
+                            synchronized (saved) {
+                                saved.add(stopId);
+                            }
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    } finally {
+                        remaining.countDown();
+                    }
+                }
+
+                @Override
+                public void onFailure(String url, IOException e) {
+                    failed.incrementAndGet();
+                    remaining.countDown();
+                }
+            });
+        }
+
+        remaining.await(timeoutMillis, TimeUnit.MILLISECONDS);
+
+        synchronized (saved) {
+            PipelineMetrics.ETA_PREFETCH_SAVED.add(saved.size());
+            PipelineMetrics.ETA_PREFETCH_FAILED.add(failed.get());
+            return new ArrayList<String>(saved);
+        }
+    }
+
+    public void shutdown() {
+        fetchEngine.shutdown();
+    }
+
+    private boolean save(String stopId, byte[] body) {
+        try {
+            // an error page or a cut off body would replace good ETAs
+            StopEtaReader.read(new ByteArrayInputStream(body), query, dictionary, new ArrayList<StopEta>());
+        } catch (IOException e) {
+            return false;
+        }
+
+        try {
+            AtomicFileWriter.replace(files.getFile(RefreshEngine.STOP_ETA_JSON_FILE_NAME + stopId), body);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
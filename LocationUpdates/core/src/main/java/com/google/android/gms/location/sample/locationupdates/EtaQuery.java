@@ -0,0 +1,64 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Which ETA rows and fields {@link StopEtaReader} keeps: the languages of destinations and
+ * remarks, the ETA sequence numbers, and optionally the routes. Everything else is skipped while
+ * the response is read.
+ */
+public class EtaQuery {
+
+    public static final int LANGUAGE_EN = 1;
+    public static final int LANGUAGE_TC = 1 << 1;
+    public static final int LANGUAGE_SC = 1 << 2;
+    public static final int ALL_LANGUAGES = LANGUAGE_EN | LANGUAGE_TC | LANGUAGE_SC;
+
+    private final int languages;
+    private long etaSeqs = -1L;
+    private String[] routes;
+
+    /**
+     * A query for every row, with destinations and remarks in the given languages.
+     */
+    public EtaQuery(int languages) {
+        this.languages = languages;
+    }
+
+    /**
+     * Keeps only rows with one of the given ETA sequence numbers, e.g. 1 for the next bus of each
+     * route. Sequence numbers run from 1 up; only 0 to 63 can be asked for.
+     *
+     * @throws IllegalArgumentException if a sequence number is outside 0 to 63.
+     */
+    public EtaQuery setEtaSeqs(int... etaSeqs) {
+        long mask = 0;
+        for (int etaSeq : etaSeqs) {
+            // a shift only uses the low 6 bits, 64 would silently select 0
+            if (etaSeq < 0 || etaSeq >= 64) {
+                throw new IllegalArgumentException("ETA sequence number out of range: " + etaSeq);
+            }
+            mask |= 1L << etaSeq;
+        }
+        this.etaSeqs = mask;
+        return this;
+    }
+
+    /**
+     * Keeps only rows of the given routes, or every route for null.
+     */
+    public EtaQuery setRoutes(String... routes) {
+        this.routes = routes;
+        return this;
+    }
+
+    public boolean keepsLanguage(int language) {
+        return (languages & language) != 0;
+    }
+
+    public boolean keepsEtaSeq(int etaSeq) {
+        return etaSeq >= 0 && etaSeq < 64 && (etaSeqs & (1L << etaSeq)) != 0;
+    }
+
+    public String[] getRoutes() {
+        return routes;
+    }
+}
@@ -0,0 +1,147 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches small JSON responses in process on a bounded pool of worker threads and hands the
+ * bodies to the caller in memory.
+ * <p/>
+ * The actual HTTP exchange goes through a {@link Transport}, by default a
+ * {@link UrlConnectionTransport} that keeps connections to the API host alive between requests.
+ * Callbacks run on the executor given to the constructor, e.g. the UI thread. Every fetch ends in
+ * exactly one of them; an unchecked exception of the transport is reported as a failure.
+ */
+public class FetchEngine {
+
+    public interface Transport {
+        Response execute(String method, String url, Map<String, String> headers, int timeoutMillis)
+                throws IOException;
+    }
+
+    public interface Callback {
+        void onResponse(String url, Response response);
+
+        void onFailure(String url, IOException e);
+    }
+
+    public static class Response {
+
+        private final int status;
+        private final Map<String, String> headers;
+        private final byte[] body;
+        private final long elapsedMillis;
+
+        /**
+         * @param headers response headers; names are matched ignoring case.
+         */
+        public Response(int status, Map<String, String> headers, byte[] body, long elapsedMillis) {
+            this.status = status;
+            this.headers = new HashMap<String, String>();
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (header.getKey() != null) {
+                    this.headers.put(header.getKey().toLowerCase(Locale.ENGLISH), header.getValue());
+                }
+            }
+            this.body = body;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.ENGLISH));
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
+    private final Transport transport;
+    private final Executor callbackExecutor;
+    private final int timeoutMillis;
+    private final ThreadPoolExecutor pool;
+
+    public FetchEngine(Transport transport, int maxConcurrent, int timeoutMillis, Executor callbackExecutor) {
+        this.transport = transport;
+        this.timeoutMillis = timeoutMillis;
+        this.callbackExecutor = callbackExecutor;
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        pool = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "fetch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    public Future<?> fetch(String url, Callback callback) {
+        return fetch("GET", url, Collections.<String, String>emptyMap(), callback);
+    }
+
+    public Future<?> fetch(final String method, final String url, final Map<String, String> headers,
+                           final Callback callback) {
+        return pool.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Response response;
+                try {
+                    response = transport.execute(method, url, headers, timeoutMillis);
+                } catch (IOException e) {
+                    postFailure(url, e, callback);
+                    return;
+                } catch (RuntimeException e) {
+                    // a broken transport must still end the fetch, or callers wait for it forever
+                    postFailure(url, new IOException(e), callback);
+                    return;
+                }
+
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResponse(url, response);
+                    }
+                });
+            }
+        });
+    }
+
+    private void postFailure(final String url, final IOException e, final Callback callback) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onFailure(url, e);
+            }
+        });
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
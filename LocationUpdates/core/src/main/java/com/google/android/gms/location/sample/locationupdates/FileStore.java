@@ -0,0 +1,12 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.File;
+
+/**
+ * Where the downloaded catalog, its snapshot and saved ETAs live, by relative name such as
+ * {@code stop/busStop}. On the device this is the app's download directory.
+ */
+public interface FileStore {
+
+    File getFile(String name);
+}
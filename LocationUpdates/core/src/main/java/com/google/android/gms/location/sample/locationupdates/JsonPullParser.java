@@ -0,0 +1,387 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming JSON tokenizer working directly on UTF-8 bytes.
+ * <p/>
+ * {@link #next()} returns one token at a time. The text of the current name, string, number or
+ * literal stays in a reusable char buffer, so callers can match field names and parse numbers
+ * without creating a String per token, and {@link #skipValue()} passes over unwanted values
+ * without decoding them. {@link #getText()} exposes the same buffer as a CharSequence.
+ */
+public class JsonPullParser {
+
+    public static final int BEGIN_OBJECT = 1;
+    public static final int END_OBJECT = 2;
+    public static final int BEGIN_ARRAY = 3;
+    public static final int END_ARRAY = 4;
+    public static final int NAME = 5;
+    public static final int STRING = 6;
+    public static final int NUMBER = 7;
+    public static final int LITERAL = 8;
+    public static final int END_DOCUMENT = 9;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private long consumed;
+
+    private char[] text = new char[64];
+    private int textLength;
+    private final CharSequence textView = new CharSequence() {
+        @Override
+        public int length() {
+            return textLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(text, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return getString();
+        }
+    };
+
+    // true for each open object, false for each open array
+    private boolean[] scopes = new boolean[16];
+    private int depth;
+    private boolean expectName;
+
+    private boolean skipping;
+    private int token;
+
+    public JsonPullParser(InputStream in) {
+        this(in, 8192);
+    }
+
+    public JsonPullParser(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    public int next() throws IOException {
+        while (true) {
+            int c = read();
+            switch (c) {
+                case -1:
+                    return token = END_DOCUMENT;
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                    continue;
+                case '{':
+                    push(true);
+                    expectName = true;
+                    return token = BEGIN_OBJECT;
+                case '}':
+                    pop();
+                    return token = END_OBJECT;
+                case '[':
+                    push(false);
+                    expectName = false;
+                    return token = BEGIN_ARRAY;
+                case ']':
+                    pop();
+                    return token = END_ARRAY;
+                case ',':
+                    expectName = depth > 0 && scopes[depth - 1];
+                    continue;
+                case ':':
+                    expectName = false;
+                    continue;
+                case '"':
+                    int kind = expectName ? NAME : STRING;
+                    readString();
+                    return token = kind;
+                default:
+                    readLiteral(c);
+                    return token = (c == '-' || (c >= '0' && c <= '9')) ? NUMBER : LITERAL;
+            }
+        }
+    }
+
+    public int getToken() {
+        return token;
+    }
+
+    /**
+     * Skips the value following the current name, including any nested objects and arrays.
+     */
+    public void skipValue() throws IOException {
+        skipping = true;
+        try {
+            int open = 0;
+            do {
+                int t = next();
+                if (t == BEGIN_OBJECT || t == BEGIN_ARRAY) {
+                    open++;
+                } else if (t == END_OBJECT || t == END_ARRAY) {
+                    open--;
+                } else if (t == END_DOCUMENT) {
+                    throw syntaxError("Unexpected end of document");
+                }
+            } while (open > 0);
+        } finally {
+            skipping = false;
+        }
+    }
+
+    public boolean nameEquals(String name) {
+        if (name.length() != textLength) {
+            return false;
+        }
+        for (int i = 0; i < textLength; i++) {
+            if (text[i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getString() {
+        return new String(text, 0, textLength);
+    }
+
+    public char[] getChars() {
+        return text;
+    }
+
+    public int getLength() {
+        return textLength;
+    }
+
+    /**
+     * The text of the current token as a view over the reusable buffer. The view is the same
+     * object for every token and its content changes with {@link #next()}.
+     */
+    public CharSequence getText() {
+        return textView;
+    }
+
+    public boolean isNull() {
+        return token == LITERAL && nameEquals("null");
+    }
+
+    /**
+     * Parses the current string or number token as a double. Plain decimals with up to 15
+     * significant digits are converted exactly without going through a String.
+     */
+    public double getDouble() {
+        int i = 0;
+        boolean negative = false;
+        if (textLength > 0 && text[0] == '-') {
+            negative = true;
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        for (; i < textLength; i++) {
+            char c = text[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+
+        if (i != textLength || digits == 0 || digits > 15 || fraction >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(getString().trim());
+        }
+
+        double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+
+        return negative ? -value : value;
+    }
+
+    public long getLong() {
+        int i = 0;
+        boolean negative = false;
+        if (textLength > 0 && text[0] == '-') {
+            negative = true;
+            i++;
+        }
+
+        long value = 0;
+        for (; i < textLength; i++) {
+            char c = text[i];
+            if (c < '0' || c > '9' || i > 18) {
+                return (long) getDouble();
+            }
+            value = value * 10 + (c - '0');
+        }
+
+        return negative ? -value : value;
+    }
+
+    public int getInt() {
+        return (int) getLong();
+    }
+
+    /**
+     * Bytes consumed from the stream so far.
+     */
+    public long getPosition() {
+        return consumed + position;
+    }
+
+    private void readString() throws IOException {
+        textLength = 0;
+
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw syntaxError("Unterminated string");
+            }
+            if (c == '"') {
+                return;
+            }
+
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        c = (hex(read()) << 12) | (hex(read()) << 8) | (hex(read()) << 4) | hex(read());
+                        break;
+                    case -1:
+                        throw syntaxError("Unterminated string");
+                    default:
+                        // \" \\ \/ stand for themselves
+                        break;
+                }
+                append(c);
+            } else if (c < 0x80) {
+                append(c);
+            } else if (c < 0xE0) {
+                append(((c & 0x1F) << 6) | (read() & 0x3F));
+            } else if (c < 0xF0) {
+                append(((c & 0x0F) << 12) | ((read() & 0x3F) << 6) | (read() & 0x3F));
+            } else {
+                int codePoint = ((c & 0x07) << 18) | ((read() & 0x3F) << 12)
+                        | ((read() & 0x3F) << 6) | (read() & 0x3F);
+                codePoint -= 0x10000;
+                append(0xD800 | (codePoint >>> 10));
+                append(0xDC00 | (codePoint & 0x3FF));
+            }
+        }
+    }
+
+    private void readLiteral(int first) throws IOException {
+        textLength = 0;
+        append(first);
+
+        while (true) {
+            if (position == limit && !fill()) {
+                return;
+            }
+            int c = buffer[position] & 0xFF;
+            if (c == ',' || c == '}' || c == ']' || c == ':'
+                    || c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                return;
+            }
+            position++;
+            append(c);
+        }
+    }
+
+    private void append(int c) {
+        if (skipping) {
+            return;
+        }
+        if (textLength == text.length) {
+            text = Arrays.copyOf(text, textLength * 2);
+        }
+        text[textLength++] = (char) c;
+    }
+
+    private int hex(int c) throws IOException {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        throw syntaxError("Invalid escape");
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        position = 0;
+        limit = 0;
+
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private void push(boolean object) {
+        if (depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+        }
+        scopes[depth++] = object;
+    }
+
+    private void pop() throws IOException {
+        if (depth == 0) {
+            throw syntaxError("Unbalanced close");
+        }
+        depth--;
+        expectName = false;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at byte " + getPosition());
+    }
+}
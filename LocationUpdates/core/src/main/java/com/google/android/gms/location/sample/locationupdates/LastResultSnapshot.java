@@ -0,0 +1,279 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The last stops and merged ETAs a {@link RefreshEngine} showed, saved so the next launch can show
+ * them before it has a location, a catalog or a single response.
+ * <p/>
+ * Layout, all values big endian, strings as in {@link DataOutputStream#writeUTF}:
+ * <pre>
+ * header     magic, version, saved time, generated time
+ * strings    count, then each distinct string once
+ * stops      count, then stop id, name_en, name_tc, name_sc as string ids, lat, lon, distance
+ * groups     count, then the stop index of the group, row count and the rows
+ * </pre>
+ * Strings that repeat across rows, routes, destinations and remarks, are written once and rows
+ * refer to them by id, -1 for null, so the twenty nearest stops take a few kilobytes.
+ */
+public class LastResultSnapshot {
+
+    private static final int MAGIC = 0x4c525354; // "LRST"
+    private static final int VERSION = 1;
+
+    private static final int NO_STRING = -1;
+
+    private final List<BusStop> stops;
+    private final List<RefreshEngine.EtaGroup> groups;
+    private final long generatedTime;
+    private final long savedTime;
+
+    private LastResultSnapshot(List<BusStop> stops, List<RefreshEngine.EtaGroup> groups,
+                               long generatedTime, long savedTime) {
+        this.stops = stops;
+        this.groups = groups;
+        this.generatedTime = generatedTime;
+        this.savedTime = savedTime;
+    }
+
+    public List<BusStop> getStops() {
+        return stops;
+    }
+
+    public List<RefreshEngine.EtaGroup> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return the newest generated time of the ETAs, or {@link DateUtil#NO_TIME}.
+     */
+    public long getGeneratedTime() {
+        return generatedTime;
+    }
+
+    public long getSavedTime() {
+        return savedTime;
+    }
+
+    /**
+     * Reads a snapshot, interning its strings into the given dictionary.
+     *
+     * @return the snapshot, or null if it is missing or corrupt.
+     */
+    public static LastResultSnapshot read(File file, EtaDictionary dictionary) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            InputStream in = new FileInputStream(file);
+            try {
+                new DataInputStream(in).readFully(bytes);
+            } finally {
+                in.close();
+            }
+
+            return read(new DataInputStream(new ByteArrayInputStream(bytes)), bytes.length, dictionary);
+        } catch (IOException e) {
+            return null;
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static LastResultSnapshot read(DataInputStream in, int length, EtaDictionary dictionary)
+            throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return null;
+        }
+
+        long savedTime = in.readLong();
+        long generatedTime = in.readLong();
+
+        String[] strings = new String[readCount(in, length)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+
+        ArrayList<BusStop> stops = new ArrayList<BusStop>();
+        int stopCount = readCount(in, length);
+        for (int i = 0; i < stopCount; i++) {
+            String stopID = string(strings, in.readInt());
+            String nameEn = string(strings, in.readInt());
+            String nameTc = string(strings, in.readInt());
+            String nameSc = string(strings, in.readInt());
+            stops.add(new BusStop(stopID, nameEn, nameTc, nameSc, in.readDouble(), in.readDouble(),
+                    in.readDouble()));
+        }
+
+        ArrayList<RefreshEngine.EtaGroup> groups = new ArrayList<RefreshEngine.EtaGroup>();
+        int groupCount = readCount(in, length);
+        for (int i = 0; i < groupCount; i++) {
+            BusStop stop = stops.get(in.readInt());
+
+            ArrayList<StopEta> etas = new ArrayList<StopEta>();
+            int etaCount = readCount(in, length);
+            for (int j = 0; j < etaCount; j++) {
+                StopEta stopEta = new StopEta(dictionary);
+                stopEta.setCo(string(strings, in.readInt()));
+                stopEta.setRoute(string(strings, in.readInt()));
+                stopEta.dir = in.readByte();
+                stopEta.setServiceType(in.readInt());
+                stopEta.setSeq(in.readInt());
+                stopEta.setDestTc(string(strings, in.readInt()));
+                stopEta.setDestSc(string(strings, in.readInt()));
+                stopEta.setDestEn(string(strings, in.readInt()));
+                stopEta.setEtaSeq(in.readInt());
+                stopEta.setEta(in.readLong());
+                stopEta.setRmkTc(string(strings, in.readInt()));
+                stopEta.setRmkSc(string(strings, in.readInt()));
+                stopEta.setRmkEn(string(strings, in.readInt()));
+                stopEta.setDataTimestamp(in.readLong());
+                etas.add(stopEta);
+            }
+
+            groups.add(new RefreshEngine.EtaGroup(stop, Collections.unmodifiableList(etas)));
+        }
+
+        return new LastResultSnapshot(Collections.unmodifiableList(stops),
+                Collections.unmodifiableList(groups), generatedTime, savedTime);
+    }
+
+    /**
+     * Saves the stops and the groups of their merged ETAs; the stop of each group must be one of
+     * the stops. The file is replaced whole, see {@link AtomicFileWriter}.
+     */
+    public static void write(File file, final List<BusStop> stops, final List<RefreshEngine.EtaGroup> groups,
+                             final long generatedTime, final long savedTime) throws IOException {
+        final StringIds strings = new StringIds();
+        for (BusStop busStop : stops) {
+            strings.add(busStop.getStopID());
+            strings.add(busStop.getNameEn());
+            strings.add(busStop.getNameTc());
+            strings.add(busStop.getNameSc());
+        }
+        for (RefreshEngine.EtaGroup group : groups) {
+            for (StopEta stopEta : group.getEtas()) {
+                strings.add(stopEta.getCo());
+                strings.add(stopEta.getRoute());
+                strings.add(stopEta.getDestTc());
+                strings.add(stopEta.getDestSc());
+                strings.add(stopEta.getDestEn());
+                strings.add(stopEta.getRmkTc());
+                strings.add(stopEta.getRmkSc());
+                strings.add(stopEta.getRmkEn());
+            }
+        }
+
+        HashMap<String, Integer> stopIndexes = new HashMap<String, Integer>();
+        for (int i = 0; i < stops.size(); i++) {
+            stopIndexes.put(stops.get(i).getStopID(), i);
+        }
+        final int[] groupStops = new int[groups.size()];
+        for (int i = 0; i < groups.size(); i++) {
+            Integer stopIndex = stopIndexes.get(groups.get(i).getStop().getStopID());
+            if (stopIndex == null) {
+                throw new IllegalArgumentException("Group of a stop not in the list: " + groups.get(i).getStop());
+            }
+            groupStops[i] = stopIndex;
+        }
+
+        AtomicFileWriter.replace(file, new AtomicFileWriter.Content() {
+            @Override
+            public void writeTo(OutputStream stream) throws IOException {
+                DataOutputStream out = new DataOutputStream(stream);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(savedTime);
+                out.writeLong(generatedTime);
+
+                out.writeInt(strings.list.size());
+                for (String string : strings.list) {
+                    out.writeUTF(string);
+                }
+
+                out.writeInt(stops.size());
+                for (BusStop busStop : stops) {
+                    out.writeInt(strings.id(busStop.getStopID()));
+                    out.writeInt(strings.id(busStop.getNameEn()));
+                    out.writeInt(strings.id(busStop.getNameTc()));
+                    out.writeInt(strings.id(busStop.getNameSc()));
+                    out.writeDouble(busStop.getLat());
+                    out.writeDouble(busStop.getLon());
+                    out.writeDouble(busStop.getDistance());
+                }
+
+                out.writeInt(groups.size());
+                for (int i = 0; i < groups.size(); i++) {
+                    RefreshEngine.EtaGroup group = groups.get(i);
+                    out.writeInt(groupStops[i]);
+
+                    out.writeInt(group.getEtas().size());
+                    for (StopEta stopEta : group.getEtas()) {
+                        out.writeInt(strings.id(stopEta.getCo()));
+                        out.writeInt(strings.id(stopEta.getRoute()));
+                        out.writeByte(stopEta.getDir());
+                        out.writeInt(stopEta.getServiceType());
+                        out.writeInt(stopEta.getSeq());
+                        out.writeInt(strings.id(stopEta.getDestTc()));
+                        out.writeInt(strings.id(stopEta.getDestSc()));
+                        out.writeInt(strings.id(stopEta.getDestEn()));
+                        out.writeInt(stopEta.getEtaSeq());
+                        out.writeLong(stopEta.getEta());
+                        out.writeInt(strings.id(stopEta.getRmkTc()));
+                        out.writeInt(strings.id(stopEta.getRmkSc()));
+                        out.writeInt(strings.id(stopEta.getRmkEn()));
+                        out.writeLong(stopEta.getDataTimestamp());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the count of a section, which cannot be more than the bytes of the file.
+     */
+    private static int readCount(DataInputStream in, int length) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > length) {
+            throw new IOException("Bad count " + count);
+        }
+        return count;
+    }
+
+    private static String string(String[] strings, int id) {
+        return id == NO_STRING ? null : strings[id];
+    }
+
+    /**
+     * The distinct strings of a snapshot in the order first seen.
+     */
+    private static class StringIds {
+
+        final ArrayList<String> list = new ArrayList<String>();
+        final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+
+        void add(String string) {
+            if (string != null && !ids.containsKey(string)) {
+                ids.put(string, list.size());
+                list.add(string);
+            }
+        }
+
+        int id(String string) {
+            return string == null ? NO_STRING : ids.get(string);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * Delivers location fixes worth acting on, e.g. from the fused location provider on the device or
+ * from a recorded track off-device.
+ */
+public interface LocationSource {
+
+    interface Listener {
+        /**
+         * @param bearing degrees clockwise from north, or NaN if the fix has none.
+         * @param speed   meters per second, or NaN if the fix has none.
+         */
+        void onLocation(double lat, double lon, double bearing, double speed);
+    }
+
+    /**
+     * Sets the listener called for each fix, replacing any earlier one; null to stop.
+     */
+    void setListener(Listener listener);
+}
@@ -0,0 +1,242 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named histograms, counters and ratios of counters, reported as text for a debug screen or as
+ * one JSON object per line for a dump file.
+ * <p/>
+ * Metrics are created once, normally as constants, and then recorded without going through the
+ * registry; see {@link PipelineMetrics}. Asking again for a name returns the metric already
+ * registered under it.
+ */
+public class Metrics {
+
+    public static class Counter {
+
+        private final String name;
+        private final AtomicLong value = new AtomicLong();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        void reset() {
+            value.set(0);
+        }
+    }
+
+    /**
+     * Share of the hits among all outcomes counted, e.g. of a cache.
+     */
+    public static class Ratio {
+
+        private final String name;
+        private final Counter hits;
+        private final Counter[] misses;
+
+        Ratio(String name, Counter hits, Counter[] misses) {
+            this.name = name;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return 0 to 1, or NaN if nothing was counted.
+         */
+        public double get() {
+            long hit = hits.get();
+            long total = hit;
+            for (Counter miss : misses) {
+                total += miss.get();
+            }
+            return total == 0 ? Double.NaN : (double) hit / total;
+        }
+    }
+
+    private final LinkedHashMap<String, Histogram> histograms = new LinkedHashMap<String, Histogram>();
+    private final LinkedHashMap<String, Counter> counters = new LinkedHashMap<String, Counter>();
+    private final LinkedHashMap<String, Ratio> ratios = new LinkedHashMap<String, Ratio>();
+
+    public synchronized Histogram histogram(String name, String unit) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram(name, unit);
+            histograms.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * A histogram of latencies in microseconds, see {@link Histogram#recordSince(long)}.
+     */
+    public Histogram timer(String name) {
+        return histogram(name, "us");
+    }
+
+    public synchronized Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = new Counter(name);
+            counters.put(name, counter);
+        }
+        return counter;
+    }
+
+    public synchronized Ratio ratio(String name, Counter hits, Counter... misses) {
+        Ratio ratio = ratios.get(name);
+        if (ratio == null) {
+            ratio = new Ratio(name, hits, misses);
+            ratios.put(name, ratio);
+        }
+        return ratio;
+    }
+
+    public synchronized List<Histogram> getHistograms() {
+        return new ArrayList<Histogram>(histograms.values());
+    }
+
+    public synchronized List<Counter> getCounters() {
+        return new ArrayList<Counter>(counters.values());
+    }
+
+    public synchronized List<Ratio> getRatios() {
+        return new ArrayList<Ratio>(ratios.values());
+    }
+
+    public synchronized void reset() {
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * @return one line per metric: count, mean, p50, p90, p99 and max of each histogram, then the
+     * counters and ratios.
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+
+        for (Histogram histogram : getHistograms()) {
+            String unit = histogram.getUnit();
+            text.append(histogram.getName()).append(": n=").append(histogram.getCount());
+            if (histogram.getCount() > 0) {
+                text.append(String.format(Locale.ENGLISH, " mean=%.0f%s", histogram.getMean(), unit))
+                        .append(" p50=").append(histogram.getPercentile(50)).append(unit)
+                        .append(" p90=").append(histogram.getPercentile(90)).append(unit)
+                        .append(" p99=").append(histogram.getPercentile(99)).append(unit)
+                        .append(" max=").append(histogram.getMax()).append(unit);
+            }
+            text.append('\n');
+        }
+
+        for (Counter counter : getCounters()) {
+            text.append(counter.getName()).append(": ").append(counter.get()).append('\n');
+        }
+
+        for (Ratio ratio : getRatios()) {
+            double value = ratio.get();
+            text.append(ratio.getName()).append(": ")
+                    .append(Double.isNaN(value) ? "-" : String.format(Locale.ENGLISH, "%.1f%%", value * 100))
+                    .append('\n');
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * @return the metrics as one line of JSON, without the line break:
+     * <pre>
+     * {"time":..., "histograms":{"name":{"unit":"us", "count":..., "sum":..., "p50":..., ...}, ...},
+     *  "counters":{"name":..., ...}, "ratios":{"name":..., ...}}
+     * </pre>
+     * A ratio with nothing counted is null.
+     */
+    public String toJsonLine(long time) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"time\":").append(time).append(",\"histograms\":{");
+
+        String separator = "";
+        for (Histogram histogram : getHistograms()) {
+            json.append(separator).append('"').append(histogram.getName()).append("\":{")
+                    .append("\"unit\":\"").append(histogram.getUnit()).append('"')
+                    .append(",\"count\":").append(histogram.getCount())
+                    .append(",\"sum\":").append(histogram.getSum())
+                    .append(",\"p50\":").append(histogram.getPercentile(50))
+                    .append(",\"p90\":").append(histogram.getPercentile(90))
+                    .append(",\"p99\":").append(histogram.getPercentile(99))
+                    .append(",\"max\":").append(histogram.getMax())
+                    .append('}');
+            separator = ",";
+        }
+
+        json.append("},\"counters\":{");
+        separator = "";
+        for (Counter counter : getCounters()) {
+            json.append(separator).append('"').append(counter.getName()).append("\":").append(counter.get());
+            separator = ",";
+        }
+
+        json.append("},\"ratios\":{");
+        separator = "";
+        for (Ratio ratio : getRatios()) {
+            double value = ratio.get();
+            json.append(separator).append('"').append(ratio.getName()).append("\":")
+                    .append(Double.isNaN(value) ? "null" : String.format(Locale.ENGLISH, "%.4f", value));
+            separator = ",";
+        }
+
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Appends {@link #toJsonLine(long)} and a line break to the file, creating it and its
+     * directory if needed.
+     */
+    public void appendJsonLine(File file, long time) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+        try {
+            writer.write(toJsonLine(time));
+            writer.write('\n');
+        } finally {
+            writer.close();
+        }
+    }
+}
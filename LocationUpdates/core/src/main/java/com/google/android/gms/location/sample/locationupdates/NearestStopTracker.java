@@ -0,0 +1,136 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps the nearest stop list up to date as the device moves.
+ * <p/>
+ * Each full query from an anchor location also collects a band of stops up to {@code guardMeter}
+ * beyond the farthest of the nearest stops. Until the device has moved half the guard distance
+ * from the anchor, no stop outside that band can enter the list, so a location fix only re-ranks
+ * the band instead of querying the whole catalog. The listener is called only when the members or
+ * the order of the list change.
+ * <p/>
+ * One stop beyond the list is ranked as well, which bounds how far the device can move before the
+ * members of the list can change; see {@link #getMembershipMargin()}.
+ */
+public class NearestStopTracker {
+
+    public interface Listener {
+        void onNearestStopChanged(ArrayList<BusStop> nearestStops);
+    }
+
+    private final StopTable table;
+    private final StopIndex index;
+    private final int count;
+    private final double guard;
+    private final Listener listener;
+
+    private boolean anchored;
+    private double anchorLat;
+    private double anchorLon;
+
+    private int[] candidates = new int[0];
+    private double bandRadius;
+    private double margin;
+
+    private final int[] nearest;
+    private final double[] nearestDistances;
+    private int nearestCount;
+
+    private final int[] ranked;
+    private final double[] rankedDistances;
+
+    public NearestStopTracker(StopTable table, StopIndex index, int count, double guardMeter, Listener listener) {
+        this.table = table;
+        this.index = index;
+        this.count = count;
+        this.guard = guardMeter / StopIndex.METERS_PER_DEGREE;
+        this.listener = listener;
+
+        nearest = new int[count];
+        nearestDistances = new double[count];
+        ranked = new int[count + 1];
+        rankedDistances = new double[count + 1];
+    }
+
+    /**
+     * Forgets the anchor so the next update runs a full query.
+     */
+    public void reset() {
+        anchored = false;
+        nearestCount = 0;
+    }
+
+    /**
+     * @return meters the device can move from the last update before another stop can enter the
+     * list. A lower bound: it is half the gap between the last stop of the list and the next stop,
+     * where stops outside the candidate band count as being at its edge.
+     */
+    public double getMembershipMargin() {
+        return margin * StopIndex.METERS_PER_DEGREE;
+    }
+
+    public void update(double lat, double lon) {
+        int found;
+        int limit = count + 1;
+        double moved = anchored ? StopIndex.distance(lat, lon, anchorLat, anchorLon) : 0;
+
+        if (!anchored || moved * 2 >= guard) {
+            found = index.nearest(lat, lon, limit, ranked, rankedDistances);
+
+            int last = Math.min(found, count);
+            bandRadius = last == 0 ? guard : rankedDistances[last - 1] + guard;
+            candidates = index.withinRadius(lat, lon, bandRadius * StopIndex.METERS_PER_DEGREE);
+
+            anchorLat = lat;
+            anchorLon = lon;
+            anchored = true;
+            moved = 0;
+        } else {
+            found = 0;
+            for (int i = 0; i < candidates.length; i++) {
+                int stop = candidates[i];
+                double d = index.distance(stop, lat, lon);
+                if (found < limit) {
+                    found = StopIndex.insert(stop, d, found, ranked, rankedDistances);
+                } else if (d < rankedDistances[limit - 1]) {
+                    StopIndex.insert(stop, d, limit - 1, ranked, rankedDistances);
+                }
+            }
+        }
+
+        double next = bandRadius - moved;
+        if (found > count && rankedDistances[count] < next) {
+            next = rankedDistances[count];
+        }
+        found = Math.min(found, count);
+        margin = found == 0 ? 0 : Math.max(0, (next - rankedDistances[found - 1]) / 2);
+
+        if (!changed(found)) {
+            return;
+        }
+
+        System.arraycopy(ranked, 0, nearest, 0, found);
+        System.arraycopy(rankedDistances, 0, nearestDistances, 0, found);
+        nearestCount = found;
+
+        ArrayList<BusStop> nearestStops = new ArrayList<BusStop>(found);
+        for (int i = 0; i < found; i++) {
+            nearestStops.add(new BusStop(table, nearest[i], nearestDistances[i]));
+        }
+        listener.onNearestStopChanged(nearestStops);
+    }
+
+    private boolean changed(int found) {
+        if (found != nearestCount) {
+            return true;
+        }
+        for (int i = 0; i < found; i++) {
+            if (ranked[i] != nearest[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
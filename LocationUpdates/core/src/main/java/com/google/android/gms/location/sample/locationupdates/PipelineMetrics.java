@@ -0,0 +1,92 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * The metrics of the refresh pipeline, one registry for the life of the process so figures add
+ * up across activity restarts. Latencies are in microseconds.
+ */
+public class PipelineMetrics {
+
+    public static final Metrics REGISTRY = new Metrics();
+
+    /**
+     * Loading the stop catalog whole, from the snapshot or, failing that, from the JSON.
+     */
+    public static final Histogram CATALOG_LOAD = REGISTRY.timer("catalog.load");
+    public static final Histogram CATALOG_UPDATE = REGISTRY.timer("catalog.update");
+
+    /**
+     * Importing the stop catalog into SQLite, and each query of it.
+     */
+    public static final Histogram CATALOG_DB_IMPORT = REGISTRY.timer("catalog.db.import");
+    public static final Histogram CATALOG_DB_QUERY = REGISTRY.timer("catalog.db.query");
+
+    /**
+     * Ranking the nearest stops for a location fix.
+     */
+    public static final Histogram NEAREST_STOPS = REGISTRY.timer("stops.nearest");
+
+    /**
+     * From asking for the ETAs of a stop to its response, including the wait for a free
+     * connection, and the size of the response body.
+     */
+    public static final Histogram ETA_FETCH = REGISTRY.timer("eta.fetch");
+    public static final Histogram ETA_FETCH_BYTES = REGISTRY.histogram("eta.fetch.bytes", "B");
+
+    /**
+     * Parsing one stop-eta response, fetched or saved.
+     */
+    public static final Histogram ETA_PARSE = REGISTRY.timer("eta.parse");
+
+    /**
+     * Grouping the nearest stops and merging the ETAs of each group.
+     */
+    public static final Histogram ETA_MERGE = REGISTRY.timer("eta.merge");
+
+    /**
+     * From handing new rows to a list to the list having applied them.
+     */
+    public static final Histogram VIEW_REBUILD_STOPS = REGISTRY.timer("view.rebuild.stops");
+    public static final Histogram VIEW_REBUILD_ETAS = REGISTRY.timer("view.rebuild.etas");
+
+    /**
+     * Saving the last shown stops and ETAs, and reading them back at launch; see
+     * {@link LastResultSnapshot}.
+     */
+    public static final Histogram LAST_RESULT_SAVE = REGISTRY.timer("result.save");
+    public static final Histogram LAST_RESULT_RESTORE = REGISTRY.timer("result.restore");
+
+    public static final Metrics.Counter CATALOG_SNAPSHOT_HIT = REGISTRY.counter("catalog.snapshot.hit");
+    public static final Metrics.Counter CATALOG_SNAPSHOT_MISS = REGISTRY.counter("catalog.snapshot.miss");
+
+    public static final Metrics.Counter ETA_FETCH_STARTED = REGISTRY.counter("eta.fetch.started");
+    public static final Metrics.Counter ETA_FETCH_JOINED = REGISTRY.counter("eta.fetch.joined");
+    public static final Metrics.Counter ETA_FETCH_FAILED = REGISTRY.counter("eta.fetch.failed");
+
+    /**
+     * ETAs fetched into the ETA store in the background, see {@link EtaPrefetcher}.
+     */
+    public static final Metrics.Counter ETA_PREFETCH_SAVED = REGISTRY.counter("eta.prefetch.saved");
+    public static final Metrics.Counter ETA_PREFETCH_FAILED = REGISTRY.counter("eta.prefetch.failed");
+
+    /**
+     * ETAs fetched for the stops ahead of the device, and fixes that found the budget spent; see
+     * {@link PredictiveWarmer}.
+     */
+    public static final Metrics.Counter ETA_PREDICTED_WARMED = REGISTRY.counter("eta.predicted.warmed");
+    public static final Metrics.Counter ETA_PREDICTED_OVER_BUDGET = REGISTRY.counter("eta.predicted.over_budget");
+
+    /**
+     * Lookups of the ETAs of a stop in the memory cache when they are shown, once per stop and
+     * show: fresh, stale and shown while revalidated, or not there.
+     */
+    public static final Metrics.Counter ETA_CACHE_FRESH = REGISTRY.counter("eta.cache.fresh");
+    public static final Metrics.Counter ETA_CACHE_STALE = REGISTRY.counter("eta.cache.stale");
+    public static final Metrics.Counter ETA_CACHE_MISS = REGISTRY.counter("eta.cache.miss");
+
+    public static final Metrics.Ratio CATALOG_SNAPSHOT_HIT_RATIO = REGISTRY.ratio("catalog.snapshot.hit_ratio",
+            CATALOG_SNAPSHOT_HIT, CATALOG_SNAPSHOT_MISS);
+    public static final Metrics.Ratio ETA_CACHE_HIT_RATIO = REGISTRY.ratio("eta.cache.hit_ratio",
+            ETA_CACHE_FRESH, ETA_CACHE_STALE, ETA_CACHE_MISS);
+    public static final Metrics.Ratio ETA_FETCH_JOIN_RATIO = REGISTRY.ratio("eta.fetch.join_ratio",
+            ETA_FETCH_JOINED, ETA_FETCH_STARTED);
+}
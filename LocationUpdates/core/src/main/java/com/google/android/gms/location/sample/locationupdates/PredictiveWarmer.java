@@ -0,0 +1,129 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Warms the ETA cache for the stops the device is heading for, so their ETAs are there when they
+ * enter the nearest stop list instead of being fetched then.
+ * <p/>
+ * The position is projected ahead along the bearing at the current speed, and the stops nearest
+ * to that point that are not in the list yet are fetched, nearest first. Fetches are paid for
+ * from a token bucket, so however fast the fixes come the prediction never costs more than its
+ * budget of requests per window. Stops with fresh or in-flight ETAs cost nothing.
+ * <p/>
+ * Not thread safe; called on the engine thread of a {@link RefreshEngine}.
+ */
+public class PredictiveWarmer {
+
+    /**
+     * Slower than this the bearing is mostly noise and the projection goes nowhere.
+     */
+    private static final double MIN_SPEED_IN_METERS_PER_SECOND = 0.5;
+
+    // the engine does not wait for these, they only fill the cache
+    private static final EtaFetcher.Listener IGNORE = new EtaFetcher.Listener() {
+        @Override
+        public void onResponse(String stopId, FetchEngine.Response response, boolean cached) {
+        }
+
+        @Override
+        public void onFailure(String stopId, IOException e) {
+        }
+    };
+
+    private final EtaFetcher etaFetcher;
+    private final EtaCache etaCache;
+    private final Clock clock;
+    private final int budget;
+    private final long budgetWindowMillis;
+
+    private volatile double horizonSeconds;
+
+    private double tokens;
+    private long tokensAt;
+
+    /**
+     * @param budget fetches allowed per window, and at most in one burst.
+     */
+    public PredictiveWarmer(EtaFetcher etaFetcher, EtaCache etaCache, Clock clock,
+                            double horizonSeconds, int budget, long budgetWindowMillis) {
+        this.etaFetcher = etaFetcher;
+        this.etaCache = etaCache;
+        this.clock = clock;
+        this.horizonSeconds = horizonSeconds;
+        this.budget = budget;
+        this.budgetWindowMillis = budgetWindowMillis;
+
+        tokens = budget;
+        tokensAt = clock.currentTimeMillis();
+    }
+
+    /**
+     * How far ahead the position is projected.
+     */
+    public void setHorizonSeconds(double horizonSeconds) {
+        this.horizonSeconds = horizonSeconds;
+    }
+
+    /**
+     * @param bearing degrees clockwise from north, or NaN if unknown.
+     * @param speed   meters per second, or NaN if unknown.
+     * @param current the stops already in the nearest stop list.
+     * @return the number of fetches started.
+     */
+    public int warm(StopCatalog catalog, List<BusStop> current,
+                    double lat, double lon, double bearing, double speed) {
+        if (Double.isNaN(bearing) || Double.isNaN(speed) || speed < MIN_SPEED_IN_METERS_PER_SECOND) {
+            return 0;
+        }
+
+        long now = clock.currentTimeMillis();
+        refill(now);
+        if (tokens < 1) {
+            PipelineMetrics.ETA_PREDICTED_OVER_BUDGET.increment();
+            return 0;
+        }
+
+        // meters ahead to degrees; east-west degrees shrink with latitude
+        double meters = speed * horizonSeconds;
+        double radians = Math.toRadians(bearing);
+        double aheadLat = lat + meters * Math.cos(radians) / StopIndex.METERS_PER_DEGREE;
+        double aheadLon = lon + meters * Math.sin(radians)
+                / (StopIndex.METERS_PER_DEGREE * Math.cos(Math.toRadians(lat)));
+
+        HashSet<String> listed = new HashSet<String>();
+        for (BusStop busStop : current) {
+            listed.add(busStop.getStopID());
+        }
+
+        List<BusStop> ahead = catalog.findNearest(aheadLat, aheadLon, Math.max(current.size(), 1));
+
+        int started = 0;
+        for (int i = 0; i < ahead.size() && tokens >= 1; i++) {
+            String stopId = ahead.get(i).getStopID();
+            if (listed.contains(stopId) || etaFetcher.isFetching(stopId)) {
+                continue;
+            }
+
+            EtaCache.Entry entry = etaCache.get(stopId);
+            if (entry != null && etaCache.isFresh(entry, now)) {
+                continue;
+            }
+
+            etaFetcher.fetch(stopId, IGNORE);
+            tokens--;
+            started++;
+        }
+
+        PipelineMetrics.ETA_PREDICTED_WARMED.add(started);
+        return started;
+    }
+
+    private void refill(long now) {
+        long elapsed = Math.max(0, now - tokensAt);
+        tokens = Math.min(budget, tokens + (double) budget * elapsed / budgetWindowMillis);
+        tokensAt = now;
+    }
+}
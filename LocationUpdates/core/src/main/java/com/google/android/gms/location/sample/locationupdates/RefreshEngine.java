@@ -0,0 +1,915 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the refresh pipeline, load catalog, rank stops, fetch, parse and merge ETAs, on one
+ * background thread and hands only finished, immutable results to the listener on the result
+ * executor, normally the UI thread.
+ * <p/>
+ * The catalog, the tracker and the current stop list are only touched on the engine thread, and
+ * the ETA fetches call back on it too, so none of them need locking. Every new location starts a
+ * new generation. A stage of an older generation that has not started yet is skipped, and its
+ * results are dropped instead of posted, so a burst of fixes costs one ranking per fix and only
+ * the last one is merged and shown. An explicit refresh that is superseded is carried over to the
+ * newer generation. Fetches already sent still complete into the cache, where the newer
+ * generation finds them.
+ */
+public class RefreshEngine {
+
+    public interface Listener {
+        /**
+         * @param diff the change applied by an update, or null when the catalog was loaded whole.
+         */
+        void onCatalogLoaded(String generatedTimestamp, StopCatalogDiff diff);
+
+        void onStopsRanked(List<BusStop> stops);
+
+        /**
+         * Called after every ranking with the meters the device can move from the ranked location
+         * before the nearest stops can change, see
+         * {@link NearestStopTracker#getMembershipMargin()}.
+         */
+        void onStopMargin(double marginMeters);
+
+        void onFetchProgress(List<FetchProgress> progress);
+
+        void onEtasReady(List<EtaGroup> groups, long generatedTime);
+
+        void onError(Exception e);
+    }
+
+    /**
+     * Fetch status of a group of stops sharing a name.
+     */
+    public static class FetchProgress {
+
+        final String name;
+        final String status;
+        final int done;
+        final int total;
+
+        FetchProgress(String name, String status, int done, int total) {
+            this.name = name;
+            this.status = status;
+            this.done = done;
+            this.total = total;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public int getDone() {
+            return done;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * The merged ETAs of a group of stops, shown under the name of its first stop. The rows are
+     * shared with the cache and must not be modified.
+     */
+    public static class EtaGroup {
+
+        final BusStop stop;
+        final List<StopEta> etas;
+
+        EtaGroup(BusStop stop, List<StopEta> etas) {
+            this.stop = stop;
+            this.etas = etas;
+        }
+
+        public BusStop getStop() {
+            return stop;
+        }
+
+        public List<StopEta> getEtas() {
+            return etas;
+        }
+    }
+
+    /**
+     * The fetches of listed stops a show waits for: those started or joined by the last fetch or
+     * show. Each fetch or show starts a new count covering every listed stop without fresh ETAs,
+     * so fetches of stops no longer listed, or of stops ahead of the device, never hold up a show.
+     */
+    private static class PendingFetches {
+
+        int count;
+    }
+
+    public final static String BUS_STOP_ETA_JSON_URL = "https://data.etabus.gov.hk/v1/transport/kmb/stop-eta/";
+
+    public final static String BUS_STOP_JSON_FILE_NAME = "stop/busStop";
+    public final static String BUS_STOP_SNAPSHOT_FILE_NAME = "stop/busStop.bin";
+    public final static String STOP_ETA_JSON_FILE_NAME = "eta/ETA_";
+    public final static String METRICS_FILE_NAME = "metrics/metrics.jsonl";
+    public final static String STOP_USAGE_FILE_NAME = "usage/stops";
+    public final static String LAST_RESULT_FILE_NAME = "result/last.bin";
+
+    private final static int closestStopCount = 20;
+
+    /**
+     * ETA requests in flight at once, and the connect and read timeout of each.
+     */
+    private final static int ETA_FETCH_CONCURRENCY = 4;
+    private final static int ETA_FETCH_TIMEOUT_IN_MILLISECONDS = 10000;
+
+    /**
+     * How far beyond the closest stops the tracker looks, so small moves only re-rank those stops.
+     */
+    private final static double NEAREST_STOP_GUARD_IN_METERS = 150;
+
+    /**
+     * How far ahead the stops the device is heading for are looked up by default, and how many of
+     * their ETAs may be fetched per minute.
+     */
+    private final static double PREDICTION_HORIZON_IN_SECONDS = 60;
+    private final static int PREDICTIVE_FETCH_BUDGET = 6;
+    private final static long PREDICTIVE_FETCH_BUDGET_WINDOW_IN_MILLISECONDS = 60000;
+
+    /**
+     * Stops whose parsed ETAs are kept in memory, and how long they are shown without being
+     * revalidated.
+     */
+    private final static int ETA_CACHE_SIZE = 64;
+    private final static long ETA_CACHE_TTL_IN_MILLISECONDS = 30000;
+
+    /**
+     * A saved result older than this is not shown at launch; its buses have long gone.
+     */
+    private final static long LAST_RESULT_MAX_AGE_IN_MILLISECONDS = 60 * 60 * 1000;
+
+    // parsed ETAs by stop ID, kept across activity restarts
+    private static final EtaCache etaCache = new EtaCache(ETA_CACHE_SIZE, ETA_CACHE_TTL_IN_MILLISECONDS);
+    private static final EtaDictionary etaDictionary = new EtaDictionary();
+
+    // only the next bus of each route, with Chinese destinations and remarks, is shown
+    private static final EtaQuery ETA_QUERY = new EtaQuery(EtaQuery.LANGUAGE_TC).setEtaSeqs(1);
+
+    private final FileStore files;
+    private final Clock clock;
+    private final Executor resultExecutor;
+    private final Listener listener;
+
+    private final ExecutorService executor;
+    private final FetchEngine fetchEngine;
+    private final EtaFetcher etaFetcher;
+    private final PredictiveWarmer predictiveWarmer;
+
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicBoolean refreshRequested = new AtomicBoolean();
+    private volatile boolean started;
+
+    private volatile boolean mergeSameName = true;
+    private volatile boolean autoFetch;
+    private volatile boolean autoShow;
+
+    // engine thread only
+
+    // bus stop catalog and its spatial index, kept until the JSON file changes
+    private StopTable busStopTable;
+    private StopIndex busStopIndex;
+    private long busStopCatalogModified;
+    private String busStopCatalogTimestamp;
+    private NearestStopTracker nearestStopTracker;
+
+    private boolean located;
+    private double lat;
+    private double lon;
+    private List<BusStop> stops = Collections.emptyList();
+    private boolean stopsChanged;
+
+    private int fetchRound;
+    private PendingFetches pendingFetches = new PendingFetches();
+    private boolean etaChangedSinceShown;
+
+    // which stops were shown when, loaded on first use
+    private StopUsage stopUsage;
+
+    public RefreshEngine(FileStore files, Clock clock, FetchEngine.Transport transport,
+                         Executor resultExecutor, Listener listener) {
+        this.files = files;
+        this.clock = clock;
+        this.resultExecutor = resultExecutor;
+        this.listener = listener;
+
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        fetchEngine = new FetchEngine(transport, ETA_FETCH_CONCURRENCY, ETA_FETCH_TIMEOUT_IN_MILLISECONDS, executor);
+        etaFetcher = new EtaFetcher(fetchEngine, etaCache, BUS_STOP_ETA_JSON_URL, new EtaFetcher.Parser() {
+            @Override
+            public EtaCache.Entry parse(byte[] body, long fetchedAt) throws Exception {
+                return readEta(new ByteArrayInputStream(body), fetchedAt);
+            }
+        }, clock);
+        predictiveWarmer = new PredictiveWarmer(etaFetcher, etaCache, clock, PREDICTION_HORIZON_IN_SECONDS,
+                PREDICTIVE_FETCH_BUDGET, PREDICTIVE_FETCH_BUDGET_WINDOW_IN_MILLISECONDS);
+    }
+
+    /**
+     * Ranks the stops around each fix of the given source, see {@link #onLocation}.
+     */
+    public void setLocationSource(LocationSource source) {
+        source.setListener(new LocationSource.Listener() {
+            @Override
+            public void onLocation(double lat, double lon, double bearing, double speed) {
+                RefreshEngine.this.onLocation(lat, lon, bearing, speed);
+            }
+        });
+    }
+
+    /**
+     * Whether stops sharing a name are fetched and shown as one group.
+     */
+    public void setMergeSameName(boolean mergeSameName) {
+        this.mergeSameName = mergeSameName;
+    }
+
+    /**
+     * Whether a refresh goes on to fetch the ETAs of the stops it ranked.
+     */
+    public void setAutoFetch(boolean autoFetch) {
+        this.autoFetch = autoFetch;
+    }
+
+    /**
+     * Whether ETAs are merged and shown again when the fetches in flight bring new data, and for
+     * the new stops after a location change.
+     */
+    public void setAutoShow(boolean autoShow) {
+        this.autoShow = autoShow;
+    }
+
+    /**
+     * How many seconds ahead along the direction of travel the stops whose ETAs are warmed are
+     * looked up, see {@link PredictiveWarmer}.
+     */
+    public void setPredictionHorizon(double seconds) {
+        predictiveWarmer.setHorizonSeconds(seconds);
+    }
+
+    /**
+     * Loads the catalog if needed, ranks the stops around the location and always posts them,
+     * then fetches their ETAs if auto fetch is on. Starts a new generation.
+     */
+    public void refresh(double lat, double lon) {
+        started = true;
+        refreshRequested.set(true);
+        update(generation.incrementAndGet(), lat, lon, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Ranks the stops around a new location fix. Nothing is posted unless the nearest stops
+     * changed, in which case their ETAs are shown again if auto show is on. Ignored until the
+     * first {@link #refresh}. Starts a new generation.
+     * <p/>
+     * With auto fetch on and a bearing and speed, the ETAs of the stops the device is heading for
+     * are then warmed within the budget of the {@link PredictiveWarmer}, after any fetch for the
+     * current stops. Shows never wait for those fetches.
+     *
+     * @param bearing degrees clockwise from north, or NaN if unknown.
+     * @param speed   meters per second, or NaN if unknown.
+     */
+    public void onLocation(double lat, double lon, double bearing, double speed) {
+        if (!started) {
+            return;
+        }
+        update(generation.incrementAndGet(), lat, lon, bearing, speed);
+    }
+
+    /**
+     * Fetches the ETAs of the current stops, skipping stops whose cached ETAs are still fresh.
+     */
+    public void fetchEtas() {
+        final int gen = generation.get();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                fetchEtas(gen);
+            }
+        });
+    }
+
+    /**
+     * Merges and posts the cached ETAs of the current stops, and revalidates the stale ones.
+     */
+    public void showEtas() {
+        final int gen = generation.get();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                showEtas(gen);
+            }
+        });
+    }
+
+    /**
+     * Applies a newly downloaded bus stop JSON to the loaded catalog and ranks the stops again if
+     * any changed.
+     */
+    public void updateCatalog() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    updateBusStopCatalog();
+                } catch (Exception e) {
+                    postError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the stops and ETAs the engine last showed, saved by an earlier run, so they can be
+     * shown at launch until the first refresh replaces them. The file is a few kilobytes and is
+     * read on the calling thread, so it can be shown before the first frame.
+     *
+     * @return the result, or null if there is none, it is corrupt or too old to be of use.
+     */
+    public LastResultSnapshot readLastResult() {
+        long start = System.nanoTime();
+        LastResultSnapshot snapshot = LastResultSnapshot.read(files.getFile(LAST_RESULT_FILE_NAME), etaDictionary);
+        PipelineMetrics.LAST_RESULT_RESTORE.recordSince(start);
+
+        if (snapshot == null
+                || clock.currentTimeMillis() - snapshot.getSavedTime() > LAST_RESULT_MAX_AGE_IN_MILLISECONDS) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Appends the current {@link PipelineMetrics} as one JSON line to {@link #METRICS_FILE_NAME}.
+     */
+    public void dumpMetrics() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    PipelineMetrics.REGISTRY.appendJsonLine(files.getFile(METRICS_FILE_NAME),
+                            clock.currentTimeMillis());
+                } catch (IOException e) {
+                    postError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops the cached ETAs and the saved last result. The file is deleted on the engine thread,
+     * after any save in progress.
+     */
+    public void clearEtas() {
+        etaCache.clear();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                files.getFile(LAST_RESULT_FILE_NAME).delete();
+            }
+        });
+    }
+
+    public void shutdown() {
+        fetchEngine.shutdown();
+        executor.shutdownNow();
+    }
+
+    private boolean isCurrent(int gen) {
+        return gen == generation.get();
+    }
+
+    private void update(final int gen, final double lat, final double lon,
+                        final double bearing, final double speed) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!isCurrent(gen)) {
+                    return;
+                }
+
+                boolean requested = refreshRequested.getAndSet(false);
+                if (!rank(gen, lat, lon, requested)) {
+                    if (requested && !isCurrent(gen)) {
+                        refreshRequested.set(true);
+                    }
+                    return;
+                }
+
+                if (requested && autoFetch) {
+                    fetchEtas(gen);
+                } else if (stopsChanged && autoShow) {
+                    showEtas(gen);
+                }
+
+                // speculative requests are still requests, and auto fetch off means none
+                if (autoFetch) {
+                    predictiveWarmer.warm(busStopIndex, stops, lat, lon, bearing, speed);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return false if the generation was superseded or there is no catalog.
+     */
+    private boolean rank(int gen, double lat, double lon, boolean always) {
+        try {
+            loadBusStopCatalog();
+        } catch (Exception e) {
+            postError(e);
+            return false;
+        }
+
+        located = true;
+        this.lat = lat;
+        this.lon = lon;
+
+        stopsChanged = false;
+        long start = System.nanoTime();
+        nearestStopTracker.update(lat, lon);
+        PipelineMetrics.NEAREST_STOPS.recordSince(start);
+        final double margin = nearestStopTracker.getMembershipMargin();
+        post(gen, new Runnable() {
+            @Override
+            public void run() {
+                listener.onStopMargin(margin);
+            }
+        });
+        if (stopsChanged || always) {
+            final List<BusStop> ranked = stops;
+            post(gen, new Runnable() {
+                @Override
+                public void run() {
+                    listener.onStopsRanked(ranked);
+                }
+            });
+        }
+        return isCurrent(gen);
+    }
+
+    private ArrayList<ArrayList<BusStop>> groupStops() {
+        ArrayList<BusStop> list = new ArrayList<BusStop>(stops);
+        if (mergeSameName) {
+            return StopGroups.byName(list);
+        }
+
+        ArrayList<ArrayList<BusStop>> stopGroups = new ArrayList<ArrayList<BusStop>>();
+        for (BusStop busStop : list) {
+            ArrayList<BusStop> group = new ArrayList<BusStop>();
+            group.add(busStop);
+            stopGroups.add(group);
+        }
+        return stopGroups;
+    }
+
+    private void fetchEtas(int gen) {
+        if (!isCurrent(gen)) {
+            return;
+        }
+
+        final int round = ++fetchRound;
+        final PendingFetches pending = pendingFetches = new PendingFetches();
+        ArrayList<ArrayList<BusStop>> stopGroups = groupStops();
+        final String[] names = new String[stopGroups.size()];
+        final ArrayList<StringBuilder> statuses = new ArrayList<StringBuilder>();
+        final int[] done = new int[stopGroups.size()];
+        final int[] totals = new int[stopGroups.size()];
+
+        long now = clock.currentTimeMillis();
+        for (int i = 0; i < stopGroups.size(); i++) {
+            ArrayList<BusStop> group = stopGroups.get(i);
+            names[i] = group.get(0).getDisplayName();
+            final StringBuilder status = new StringBuilder(names[i]);
+            statuses.add(status);
+            totals[i] = group.size();
+
+            final int index = i;
+            for (BusStop busStop : group) {
+                String stopID = busStop.getStopID();
+
+                // not counted here, the show that follows looks every stop up once
+                EtaCache.Entry entry = etaCache.get(stopID);
+                if (entry != null && etaCache.isFresh(entry, now)) {
+                    status.append("\n").append(etaFetcher.getUrl(stopID)).append(" cached");
+                    done[index]++;
+                    continue;
+                }
+
+                pending.count++;
+                etaFetcher.fetch(stopID, new EtaFetcher.Listener() {
+                    @Override
+                    public void onResponse(String stopId, FetchEngine.Response response, boolean cached) {
+                        status.append("\n").append(etaFetcher.getUrl(stopId)).append(" ")
+                                .append(response.getStatus()).append(" ")
+                                .append(response.getBody().length).append(" bytes ")
+                                .append(response.getElapsedMillis()).append("ms");
+                        done[index]++;
+                        if (round == fetchRound) {
+                            postProgress(names, statuses, done, totals);
+                        }
+
+                        onEtaFetchFinished(pending, cached);
+                    }
+
+                    @Override
+                    public void onFailure(String stopId, IOException e) {
+                        status.append("\n").append(etaFetcher.getUrl(stopId)).append(" ").append(e.toString());
+                        done[index]++;
+                        if (round == fetchRound) {
+                            postProgress(names, statuses, done, totals);
+                        }
+
+                        onEtaFetchFinished(pending, false);
+                    }
+                });
+            }
+        }
+
+        postProgress(names, statuses, done, totals);
+
+        // every stop was fresh in the cache, nothing will finish later
+        if (pending.count == 0 && autoShow) {
+            showEtas(gen);
+        }
+    }
+
+    /**
+     * Shows the ETAs once the last pending fetch of the listed stops has finished, if any fetch
+     * brought new data. Failed fetches alone do not show again, which would only start another
+     * revalidation.
+     */
+    private void onEtaFetchFinished(PendingFetches pending, boolean cached) {
+        pending.count--;
+        if (cached) {
+            etaChangedSinceShown = true;
+        }
+
+        if (pending == pendingFetches && pending.count == 0 && etaChangedSinceShown && autoShow) {
+            showEtas(generation.get());
+        }
+    }
+
+    private void showEtas(int gen) {
+        if (!isCurrent(gen)) {
+            return;
+        }
+
+        HashMap<String, ArrayList<StopEta>> etasOfStop = new HashMap<String, ArrayList<StopEta>>();
+        long generatedTime = DateUtil.NO_TIME;
+
+        etaChangedSinceShown = false;
+        PendingFetches pending = pendingFetches = new PendingFetches();
+        long now = clock.currentTimeMillis();
+
+        for (BusStop busStop : stops) {
+            String stopID = busStop.getStopID();
+
+            // stale ETAs are shown as they are while a fresh copy is fetched
+            EtaCache.Entry entry = etaCache.get(stopID);
+            countCacheLookup(entry, now);
+            if (entry == null || !etaCache.isFresh(entry, now)) {
+                // the background prefetch may have saved newer ETAs than the cached ones
+                EtaCache.Entry saved = null;
+                try {
+                    saved = readEtaFile(stopID, entry == null ? Long.MIN_VALUE : entry.getFetchedAt());
+                } catch (IOException e) {
+                    postError(e);
+                }
+                if (saved != null) {
+                    entry = saved;
+                    etaCache.put(stopID, entry);
+                }
+            }
+            if (entry == null || !etaCache.isFresh(entry, now)) {
+                revalidateEta(stopID, pending);
+            }
+
+            if (entry != null) {
+                generatedTime = Math.max(generatedTime, entry.getGeneratedTime());
+                etasOfStop.put(stopID, entry.getEtas());
+            }
+        }
+
+        if (!isCurrent(gen)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        ArrayList<EtaGroup> groups = new ArrayList<EtaGroup>();
+        for (ArrayList<BusStop> group : groupStops()) {
+            ArrayList<ArrayList<StopEta>> etasOfGroup = new ArrayList<ArrayList<StopEta>>();
+            for (BusStop busStop : group) {
+                ArrayList<StopEta> etas = etasOfStop.get(busStop.getStopID());
+                if (etas != null) {
+                    etasOfGroup.add(etas);
+                }
+            }
+
+            groups.add(new EtaGroup(group.get(0),
+                    Collections.unmodifiableList(StopGroups.mergeEtas(etasOfGroup))));
+        }
+
+        PipelineMetrics.ETA_MERGE.recordSince(start);
+
+        final List<EtaGroup> result = Collections.unmodifiableList(groups);
+        final long resultTime = generatedTime;
+        post(gen, new Runnable() {
+            @Override
+            public void run() {
+                listener.onEtasReady(result, resultTime);
+            }
+        });
+
+        saveLastResult(result, resultTime, now);
+        recordShown(now);
+    }
+
+    /**
+     * Saves the shown result for the next launch, see {@link #readLastResult}.
+     */
+    private void saveLastResult(List<EtaGroup> groups, long generatedTime, long now) {
+        long start = System.nanoTime();
+        try {
+            LastResultSnapshot.write(files.getFile(LAST_RESULT_FILE_NAME), stops, groups, generatedTime, now);
+        } catch (IOException e) {
+            postError(e);
+        }
+        PipelineMetrics.LAST_RESULT_SAVE.recordSince(start);
+    }
+
+    /**
+     * Counts the current stops as shown, for the background prefetch of {@link EtaPrefetcher}.
+     */
+    private void recordShown(long now) {
+        File file = files.getFile(STOP_USAGE_FILE_NAME);
+        if (stopUsage == null) {
+            stopUsage = StopUsage.load(file);
+        }
+
+        ArrayList<String> stopIds = new ArrayList<String>(stops.size());
+        for (BusStop busStop : stops) {
+            stopIds.add(busStop.getStopID());
+        }
+
+        if (stopUsage.recordShown(stopIds, now)) {
+            try {
+                stopUsage.save(file);
+            } catch (IOException e) {
+                postError(e);
+            }
+        }
+    }
+
+    private void countCacheLookup(EtaCache.Entry entry, long now) {
+        if (entry == null) {
+            PipelineMetrics.ETA_CACHE_MISS.increment();
+        } else if (etaCache.isFresh(entry, now)) {
+            PipelineMetrics.ETA_CACHE_FRESH.increment();
+        } else {
+            PipelineMetrics.ETA_CACHE_STALE.increment();
+        }
+    }
+
+    /**
+     * Refreshes the stale cached ETAs of a stop in the background while they are being shown.
+     */
+    private void revalidateEta(String stopID, final PendingFetches pending) {
+        pending.count++;
+        etaFetcher.fetch(stopID, new EtaFetcher.Listener() {
+            @Override
+            public void onResponse(String stopId, FetchEngine.Response response, boolean cached) {
+                onEtaFetchFinished(pending, cached);
+            }
+
+            @Override
+            public void onFailure(String stopId, IOException e) {
+                onEtaFetchFinished(pending, false);
+            }
+        });
+    }
+
+    /**
+     * Posts a result unless its generation has been superseded by the time it would run.
+     */
+    private void post(final int gen, final Runnable result) {
+        resultExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (isCurrent(gen)) {
+                    result.run();
+                }
+            }
+        });
+    }
+
+    private void postProgress(String[] names, ArrayList<StringBuilder> statuses, int[] done, int[] totals) {
+        ArrayList<FetchProgress> progress = new ArrayList<FetchProgress>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            progress.add(new FetchProgress(names[i], statuses.get(i).toString(), done[i], totals[i]));
+        }
+
+        final List<FetchProgress> result = Collections.unmodifiableList(progress);
+        resultExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFetchProgress(result);
+            }
+        });
+    }
+
+    private void postError(final Exception e) {
+        resultExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onError(e);
+            }
+        });
+    }
+
+    private void postCatalog(final String timeStamp, final StopCatalogDiff diff) {
+        resultExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onCatalogLoaded(timeStamp, diff);
+            }
+        });
+    }
+
+    /**
+     * Reads ETAs saved by an earlier download or the background prefetch, so they can be shown
+     * before the next fetch.
+     *
+     * @return the ETAs, dated by the file, or null if there is no file for the stop or it was not
+     * modified after the given time.
+     */
+    private EtaCache.Entry readEtaFile(String stopID, long newerThan) throws IOException {
+        File file = files.getFile(STOP_ETA_JSON_FILE_NAME + stopID);
+
+        // 0 if there is no file
+        long modified = file.lastModified();
+        if (modified == 0 || modified <= newerThan) {
+            return null;
+        }
+
+        return readEta(new FileInputStream(file), modified);
+    }
+
+    private EtaCache.Entry readEta(InputStream stream, long fetchedAt) throws IOException {
+        ArrayList<StopEta> etaArray = new ArrayList<StopEta>();
+        try {
+            long start = System.nanoTime();
+            long timeStamp = StopEtaReader.read(stream, ETA_QUERY, etaDictionary, etaArray);
+            PipelineMetrics.ETA_PARSE.recordSince(start);
+            return new EtaCache.Entry(etaArray, timeStamp, fetchedAt);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Loads the bus stop catalog and its spatial index. Skipped while the JSON file is unchanged
+     * since the last load, so re-reading only costs the nearest stop query. The first load after a
+     * download parses the JSON and compiles it into a binary snapshot; later loads, including
+     * after a restart, map the snapshot instead.
+     */
+    private void loadBusStopCatalog() throws Exception {
+        File file = files.getFile(BUS_STOP_JSON_FILE_NAME);
+
+        long modified = file.lastModified();
+        if (busStopIndex != null && modified == busStopCatalogModified) {
+            return;
+        }
+
+        busStopTable = null;
+        busStopIndex = null;
+        nearestStopTracker = null;
+
+        long start = System.nanoTime();
+        File snapshotFile = files.getFile(BUS_STOP_SNAPSHOT_FILE_NAME);
+        StopCatalogSnapshot snapshot = StopCatalogSnapshot.open(snapshotFile, file);
+
+        StopTable table;
+        StopIndex index;
+        String timeStamp;
+
+        if (snapshot != null) {
+            PipelineMetrics.CATALOG_SNAPSHOT_HIT.increment();
+            table = snapshot.getTable();
+            index = snapshot.getIndex();
+            timeStamp = snapshot.getGeneratedTimestamp();
+        } else {
+            PipelineMetrics.CATALOG_SNAPSHOT_MISS.increment();
+            // a stop record takes about 200 bytes of JSON
+            table = new StopTable((int) (file.length() / 200));
+            timeStamp = readBusStopJSON(file, table);
+            index = new StopIndex(table);
+
+            writeBusStopSnapshot(file, table, index, timeStamp);
+        }
+        PipelineMetrics.CATALOG_LOAD.recordSince(start);
+
+        busStopTable = table;
+        busStopIndex = index;
+        busStopCatalogModified = modified;
+        busStopCatalogTimestamp = timeStamp;
+
+        nearestStopTracker = new NearestStopTracker(table, busStopIndex, closestStopCount,
+                NEAREST_STOP_GUARD_IN_METERS, new NearestStopTracker.Listener() {
+                    @Override
+                    public void onNearestStopChanged(ArrayList<BusStop> nearestStops) {
+                        stops = Collections.unmodifiableList(new ArrayList<BusStop>(nearestStops));
+                        stopsChanged = true;
+                    }
+                });
+
+        postCatalog(timeStamp, null);
+    }
+
+    /**
+     * Brings the loaded catalog up to date with a newly downloaded bus stop JSON by applying the
+     * stop level difference to the table and index in place. Nothing to do if no catalog is loaded
+     * yet; the next refresh loads the new file.
+     */
+    private void updateBusStopCatalog() throws Exception {
+        if (busStopTable == null) {
+            return;
+        }
+
+        File file = files.getFile(BUS_STOP_JSON_FILE_NAME);
+
+        long start = System.nanoTime();
+        StopTable fresh = new StopTable((int) (file.length() / 200));
+        String timeStamp = readBusStopJSON(file, fresh);
+
+        StopCatalogDiff diff = null;
+        if (timeStamp == null || !timeStamp.equals(busStopCatalogTimestamp)) {
+            diff = StopCatalogDiff.compute(busStopTable, fresh);
+            diff.apply(busStopTable, busStopIndex);
+        }
+        PipelineMetrics.CATALOG_UPDATE.recordSince(start);
+
+        busStopCatalogModified = file.lastModified();
+        busStopCatalogTimestamp = timeStamp;
+
+        postCatalog(timeStamp, diff);
+
+        if (diff != null && !diff.isEmpty() && located) {
+            // rows were renumbered, rank again from scratch
+            nearestStopTracker.reset();
+            update(generation.incrementAndGet(), lat, lon, Double.NaN, Double.NaN);
+        }
+
+        writeBusStopSnapshot(file, busStopTable, busStopIndex, timeStamp);
+    }
+
+    private String readBusStopJSON(File file, StopTable table) throws IOException {
+        FileInputStream fileStream = new FileInputStream(file);
+        try {
+            return BusStopCatalogReader.read(fileStream, table);
+        } finally {
+            fileStream.close();
+        }
+    }
+
+    private void writeBusStopSnapshot(File file, StopTable table, StopIndex index, String timeStamp) {
+        File snapshotFile = files.getFile(BUS_STOP_SNAPSHOT_FILE_NAME);
+
+        try {
+            StopCatalogSnapshot.write(snapshotFile, file, table, index, timeStamp);
+        } catch (IOException e) {
+            // not fatal, the next load parses the JSON again
+            postError(e);
+        }
+    }
+}
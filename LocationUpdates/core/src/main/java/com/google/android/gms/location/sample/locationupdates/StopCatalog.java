@@ -0,0 +1,21 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.util.List;
+
+/**
+ * Bus stops looked up by ID or by area, e.g. from the {@link StopIndex} of a catalog in the heap
+ * or from a database on the device. Distances are the planar degree distance of
+ * {@link StopIndex#distance(double, double, double, double)}.
+ */
+public interface StopCatalog {
+
+    /**
+     * @return the stop, with a distance of 0, or null if there is none with the ID.
+     */
+    BusStop findById(String stopId);
+
+    /**
+     * @return at most count stops, closest to the location first.
+     */
+    List<BusStop> findNearest(double lat, double lon, int count);
+}
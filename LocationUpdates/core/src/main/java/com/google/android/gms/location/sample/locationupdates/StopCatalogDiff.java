@@ -0,0 +1,105 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.util.ArrayList;
+
+/**
+ * Stop level difference between the loaded catalog and a newly downloaded one: stops added,
+ * stops removed, and stops that moved or were renamed. Applying it updates the loaded
+ * {@link StopTable} and {@link StopIndex} in place instead of rebuilding them.
+ */
+public class StopCatalogDiff {
+
+    private final StopTable fresh;
+    private final ArrayList<Integer> added = new ArrayList<Integer>();
+    private final ArrayList<Integer> changed = new ArrayList<Integer>();
+    private final ArrayList<String> removed = new ArrayList<String>();
+
+    private StopCatalogDiff(StopTable fresh) {
+        this.fresh = fresh;
+    }
+
+    public static StopCatalogDiff compute(StopTable current, StopTable fresh) {
+        StopCatalogDiff diff = new StopCatalogDiff(fresh);
+
+        for (int i = 0; i < fresh.size(); i++) {
+            int row = current.indexOf(fresh.getStopID(i));
+            if (row < 0) {
+                diff.added.add(i);
+            } else if (current.getLat(row) != fresh.getLat(i)
+                    || current.getLon(row) != fresh.getLon(i)
+                    || !equal(current.getNameEn(row), fresh.getNameEn(i))
+                    || !equal(current.getNameTc(row), fresh.getNameTc(i))
+                    || !equal(current.getNameSc(row), fresh.getNameSc(i))) {
+                diff.changed.add(i);
+            }
+        }
+
+        for (int row = 0; row < current.size(); row++) {
+            if (fresh.indexOf(current.getStopID(row)) < 0) {
+                diff.removed.add(current.getStopID(row));
+            }
+        }
+
+        return diff;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    public int getAddedCount() {
+        return added.size();
+    }
+
+    public int getChangedCount() {
+        return changed.size();
+    }
+
+    public int getRemovedCount() {
+        return removed.size();
+    }
+
+    /**
+     * Applies the difference to the table and index it was computed against. Row numbers of the
+     * table change, so views over the old rows must be refreshed afterwards.
+     */
+    public void apply(StopTable table, StopIndex index) {
+
+        for (String stopId : removed) {
+            int row = table.indexOf(stopId);
+            if (row < 0) {
+                continue;
+            }
+
+            index.remove(row);
+            int moved = table.remove(row);
+            if (moved >= 0) {
+                index.renumber(moved, row);
+            }
+        }
+
+        for (int i : changed) {
+            int row = table.indexOf(fresh.getStopID(i));
+
+            index.remove(row);
+            table.set(row, fresh.getNameEn(i), fresh.getNameTc(i), fresh.getNameSc(i),
+                    fresh.getLat(i), fresh.getLon(i));
+            index.add(row);
+        }
+
+        for (int i : added) {
+            int row = table.add(fresh.getStopID(i), fresh.getNameEn(i), fresh.getNameTc(i),
+                    fresh.getNameSc(i), fresh.getLat(i), fresh.getLon(i));
+            index.add(row);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return added.size() + " added, " + removed.size() + " removed, " + changed.size() + " changed";
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,281 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Binary copy of the bus stop catalog and its spatial index, compiled from the stop JSON so later
+ * launches can map it instead of parsing JSON.
+ * <p/>
+ * Layout, all values big endian:
+ * <pre>
+ * header     magic, version, source length, source last modified, stop count, name count,
+ *            string bytes, grid rows, grid columns, grid min lat, grid min lon, file length
+ * lat, lon   double[stop count] each
+ * names      int[stop count] each for name_en, name_tc, name_sc, ids into the name strings
+ * strings    int[stop count + name count + 2] offsets into the string bytes: stop ids, names,
+ *            then the generated timestamp, followed by the UTF-8 string bytes
+ * grid       int[rows * columns + 1] cell start, int[stop count] stops of each cell
+ * </pre>
+ * The header records the length and modification time of the JSON it was compiled from; a
+ * snapshot that does not match the current JSON, or whose sizes do not add up, is not used.
+ * Columns are not copied out of the mapping, see {@link StopTable} and {@link StopIndex}.
+ */
+public class StopCatalogSnapshot {
+
+    private static final int MAGIC = 0x42535450; // "BSTP"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 4 * 2 + 8 * 2 + 4 * 5 + 8 * 2 + 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final StopTable table;
+    private final StopIndex index;
+    private final String generatedTimestamp;
+
+    private StopCatalogSnapshot(StopTable table, StopIndex index, String generatedTimestamp) {
+        this.table = table;
+        this.index = index;
+        this.generatedTimestamp = generatedTimestamp;
+    }
+
+    public StopTable getTable() {
+        return table;
+    }
+
+    public StopIndex getIndex() {
+        return index;
+    }
+
+    public String getGeneratedTimestamp() {
+        return generatedTimestamp;
+    }
+
+    /**
+     * Maps a snapshot compiled from the given JSON file.
+     *
+     * @return the snapshot, or null if it is missing, stale or corrupt.
+     */
+    public static StopCatalogSnapshot open(File file, File source) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            FileChannel channel = randomAccessFile.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            return read(buffer, source);
+        } catch (IOException e) {
+            return null;
+        } catch (BufferUnderflowException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (IOException e) {
+                    // nothing left to release
+                }
+            }
+        }
+    }
+
+    private static StopCatalogSnapshot read(ByteBuffer buffer, File source) {
+        if (buffer.remaining() < HEADER_LENGTH
+                || buffer.getInt() != MAGIC
+                || buffer.getInt() != VERSION
+                || buffer.getLong() != source.length()
+                || buffer.getLong() != source.lastModified()) {
+            return null;
+        }
+
+        int stopCount = buffer.getInt();
+        int nameCount = buffer.getInt();
+        int stringBytes = buffer.getInt();
+        int rows = buffer.getInt();
+        int columns = buffer.getInt();
+        double minLat = buffer.getDouble();
+        double minLon = buffer.getDouble();
+        long fileLength = buffer.getLong();
+
+        // sizes come from the file, so add them up as longs before trusting any of them
+        if (stopCount < 0 || nameCount < 0 || stringBytes < 0 || rows <= 0 || columns <= 0
+                || fileLength != buffer.capacity()
+                || fileLength != length(stopCount, nameCount, stringBytes, rows, columns)) {
+            return null;
+        }
+
+        DoubleBuffer lat = section(buffer, 8 * stopCount).asDoubleBuffer();
+        DoubleBuffer lon = section(buffer, 8 * stopCount).asDoubleBuffer();
+        IntBuffer nameEn = section(buffer, 4 * stopCount).asIntBuffer();
+        IntBuffer nameTc = section(buffer, 4 * stopCount).asIntBuffer();
+        IntBuffer nameSc = section(buffer, 4 * stopCount).asIntBuffer();
+        IntBuffer offsets = section(buffer, 4 * (stopCount + nameCount + 2)).asIntBuffer();
+        ByteBuffer strings = section(buffer, stringBytes);
+        IntBuffer cellStart = section(buffer, 4 * (rows * columns + 1)).asIntBuffer();
+        IntBuffer cellStops = section(buffer, 4 * stopCount).asIntBuffer();
+
+        // columns are read in place later, so reject anything that would index out of them now
+        if (!inRange(nameEn, nameCount) || !inRange(nameTc, nameCount) || !inRange(nameSc, nameCount)
+                || !ascending(offsets, stringBytes)
+                || !inRange(cellStops, stopCount) || !ascending(cellStart, stopCount)) {
+            return null;
+        }
+
+        int start = offsets.get(stopCount + nameCount);
+        byte[] bytes = new byte[offsets.get(stopCount + nameCount + 1) - start];
+        strings.position(start);
+        strings.get(bytes);
+        strings.position(0);
+        String generatedTimestamp = new String(bytes, UTF_8);
+
+        StopTable table = new StopTable(stopCount, nameCount, lat, lon, nameEn, nameTc, nameSc, offsets, strings);
+        StopIndex index = new StopIndex(table, minLat, minLon, rows, columns, cellStart, cellStops);
+
+        return new StopCatalogSnapshot(table, index,
+                generatedTimestamp.length() == 0 ? null : generatedTimestamp);
+    }
+
+    /**
+     * Compiles the table and index into a snapshot tied to the given JSON file, replacing the file
+     * whole, see {@link AtomicFileWriter}.
+     */
+    public static void write(File file, final File source, final StopTable table, final StopIndex index,
+                             String generatedTimestamp) throws IOException {
+
+        final int stopCount = table.size();
+        final int nameCount = table.nameCount();
+        final int rows = index.getRows();
+        final int columns = index.getColumns();
+
+        final byte[][] strings = new byte[stopCount + nameCount + 1][];
+        int stringBytes = 0;
+        for (int i = 0; i < stopCount; i++) {
+            strings[i] = encode(table.getStopID(i));
+            stringBytes += strings[i].length;
+        }
+        for (int i = 0; i < nameCount; i++) {
+            strings[stopCount + i] = encode(table.getName(i));
+            stringBytes += strings[stopCount + i].length;
+        }
+        strings[stopCount + nameCount] = encode(generatedTimestamp);
+        stringBytes += strings[stopCount + nameCount].length;
+        final int totalStringBytes = stringBytes;
+
+        AtomicFileWriter.replace(file, new AtomicFileWriter.Content() {
+            @Override
+            public void writeTo(OutputStream stream) throws IOException {
+                DataOutputStream out = new DataOutputStream(stream);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(source.length());
+                out.writeLong(source.lastModified());
+                out.writeInt(stopCount);
+                out.writeInt(nameCount);
+                out.writeInt(totalStringBytes);
+                out.writeInt(rows);
+                out.writeInt(columns);
+                out.writeDouble(index.getMinLat());
+                out.writeDouble(index.getMinLon());
+                out.writeLong(length(stopCount, nameCount, totalStringBytes, rows, columns));
+
+                for (int i = 0; i < stopCount; i++) {
+                    out.writeDouble(table.getLat(i));
+                }
+                for (int i = 0; i < stopCount; i++) {
+                    out.writeDouble(table.getLon(i));
+                }
+                for (int i = 0; i < stopCount; i++) {
+                    out.writeInt(table.getNameEnId(i));
+                }
+                for (int i = 0; i < stopCount; i++) {
+                    out.writeInt(table.getNameTcId(i));
+                }
+                for (int i = 0; i < stopCount; i++) {
+                    out.writeInt(table.getNameScId(i));
+                }
+
+                int offset = 0;
+                out.writeInt(offset);
+                for (byte[] string : strings) {
+                    offset += string.length;
+                    out.writeInt(offset);
+                }
+                for (byte[] string : strings) {
+                    out.write(string);
+                }
+
+                int cellStart = 0;
+                out.writeInt(cellStart);
+                for (int cell = 0; cell < rows * columns; cell++) {
+                    cellStart += index.getCellCount(cell);
+                    out.writeInt(cellStart);
+                }
+                for (int cell = 0; cell < rows * columns; cell++) {
+                    for (int i = 0; i < index.getCellCount(cell); i++) {
+                        out.writeInt(index.getCellStop(cell, i));
+                    }
+                }
+            }
+        });
+    }
+
+    private static long length(int stopCount, int nameCount, int stringBytes, int rows, int columns) {
+        return HEADER_LENGTH
+                + 16L * stopCount
+                + 12L * stopCount
+                + 4L * ((long) stopCount + nameCount + 2) + stringBytes
+                + 4L * ((long) rows * columns + 1) + 4L * stopCount;
+    }
+
+    /**
+     * The next length bytes of the buffer as a buffer of their own; the caller has checked that
+     * the whole layout fits in the file.
+     */
+    private static ByteBuffer section(ByteBuffer buffer, int length) {
+        ByteBuffer section = buffer.slice();
+        section.limit(length);
+        buffer.position(buffer.position() + length);
+        return section;
+    }
+
+    private static boolean inRange(IntBuffer values, int limit) {
+        for (int i = 0; i < values.limit(); i++) {
+            int value = values.get(i);
+            if (value < 0 || value >= limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean ascending(IntBuffer values, int last) {
+        for (int i = 1; i < values.limit(); i++) {
+            if (values.get(i) < values.get(i - 1)) {
+                return false;
+            }
+        }
+        return values.get(0) == 0 && values.get(values.limit() - 1) == last;
+    }
+
+    private static byte[] encode(String string) {
+        return string == null ? new byte[0] : string.getBytes(UTF_8);
+    }
+}
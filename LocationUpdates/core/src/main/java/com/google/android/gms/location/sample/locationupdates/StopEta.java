@@ -0,0 +1,213 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+/**
+ * One ETA row of a stop. Numbers are kept as numbers, times as epoch milliseconds, and repeating
+ * strings as ids into a shared {@link EtaDictionary}, so a row is a single small object.
+ */
+public class StopEta {
+
+    public static final byte DIR_OUTBOUND = 'O';
+    public static final byte DIR_INBOUND = 'I';
+
+    final EtaDictionary dictionary;
+
+    int co = EtaDictionary.NONE;
+    int route = EtaDictionary.NONE;
+    byte dir;
+    int serviceType;
+    int seq;
+    int destTc = EtaDictionary.NONE;
+    int destSc = EtaDictionary.NONE;
+    int destEn = EtaDictionary.NONE;
+    int etaSeq;
+    long eta = DateUtil.NO_TIME;
+    int rmkTc = EtaDictionary.NONE;
+    int rmkSc = EtaDictionary.NONE;
+    int rmkEn = EtaDictionary.NONE;
+    long dataTimestamp = DateUtil.NO_TIME;
+
+    public StopEta(EtaDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public String getCo() {
+        return dictionary.get(co);
+    }
+
+    public void setCo(String co) {
+        this.co = dictionary.intern(co);
+    }
+
+    public String getRoute() {
+        return dictionary.get(route);
+    }
+
+    public int getRouteId() {
+        return route;
+    }
+
+    public void setRoute(String route) {
+        this.route = dictionary.intern(route);
+    }
+
+    /**
+     * @return {@link #DIR_OUTBOUND} or {@link #DIR_INBOUND}.
+     */
+    public byte getDir() {
+        return dir;
+    }
+
+    public void setDir(String dir) {
+        this.dir = dir == null || dir.length() == 0 ? 0 : (byte) dir.charAt(0);
+    }
+
+    public int getServiceType() {
+        return serviceType;
+    }
+
+    public void setServiceType(int serviceType) {
+        this.serviceType = serviceType;
+    }
+
+    public int getSeq() {
+        return seq;
+    }
+
+    public void setSeq(int seq) {
+        this.seq = seq;
+    }
+
+    public String getDestTc() {
+        return dictionary.get(destTc);
+    }
+
+    public int getDestTcId() {
+        return destTc;
+    }
+
+    public void setDestTc(String destTc) {
+        this.destTc = dictionary.intern(destTc);
+    }
+
+    public String getDestSc() {
+        return dictionary.get(destSc);
+    }
+
+    public void setDestSc(String destSc) {
+        this.destSc = dictionary.intern(destSc);
+    }
+
+    public String getDestEn() {
+        return dictionary.get(destEn);
+    }
+
+    public void setDestEn(String destEn) {
+        this.destEn = dictionary.intern(destEn);
+    }
+
+    public int getEtaSeq() {
+        return etaSeq;
+    }
+
+    public void setEtaSeq(int etaSeq) {
+        this.etaSeq = etaSeq;
+    }
+
+    /**
+     * @return the ETA in epoch milliseconds, or {@link DateUtil#NO_TIME} if there is no bus.
+     */
+    public long getEta() {
+        return eta;
+    }
+
+    public void setEta(long eta) {
+        this.eta = eta;
+    }
+
+    public String getRmkTc() {
+        return dictionary.get(rmkTc);
+    }
+
+    public void setRmkTc(String rmkTc) {
+        this.rmkTc = dictionary.intern(rmkTc);
+    }
+
+    public String getRmkSc() {
+        return dictionary.get(rmkSc);
+    }
+
+    public void setRmkSc(String rmkSc) {
+        this.rmkSc = dictionary.intern(rmkSc);
+    }
+
+    public String getRmkEn() {
+        return dictionary.get(rmkEn);
+    }
+
+    public void setRmkEn(String rmkEn) {
+        this.rmkEn = dictionary.intern(rmkEn);
+    }
+
+    public long getDataTimestamp() {
+        return dataTimestamp;
+    }
+
+    public void setDataTimestamp(long dataTimestamp) {
+        this.dataTimestamp = dataTimestamp;
+    }
+
+    public long getMinutesLeft(long now) {
+        return DateUtil.minutesUntil(eta, now);
+    }
+
+    /**
+     * @return true if both rows are the same departure: route, direction, service type and ETA
+     * sequence. Only valid for rows interned in the same dictionary.
+     */
+    public boolean isSameBus(StopEta other) {
+        return route == other.route && dir == other.dir && serviceType == other.serviceType
+                && etaSeq == other.etaSeq;
+    }
+
+    /**
+     * @return true if every field of both rows is equal. Only valid for rows interned in the same
+     * dictionary.
+     */
+    public boolean hasSameContents(StopEta other) {
+        return co == other.co && route == other.route && dir == other.dir
+                && serviceType == other.serviceType && seq == other.seq
+                && destTc == other.destTc && destSc == other.destSc && destEn == other.destEn
+                && etaSeq == other.etaSeq && eta == other.eta
+                && rmkTc == other.rmkTc && rmkSc == other.rmkSc && rmkEn == other.rmkEn
+                && dataTimestamp == other.dataTimestamp;
+    }
+
+    /**
+     * @return the fields compared by {@link #isSameBus} packed into one value, for hashing.
+     */
+    public long getBusKey() {
+        return ((long) route << 32) | ((dir & 0xffL) << 24) | ((serviceType & 0xffffL) << 8) | (etaSeq & 0xffL);
+    }
+
+    /**
+     * @return the row as shown, with the minutes left counted from the given time.
+     */
+    public String getDisplayText(long now) {
+        String prefix = getRoute() + " " + (char) dir + " " + serviceType + " " + getDestTc();
+
+        // no bus, the remark tells why
+        if (eta == DateUtil.NO_TIME) {
+            return prefix + " " + getRmkTc();
+        }
+
+        long etaLeft = getMinutesLeft(now);
+        String etaTime = DateUtil.returnTimeString(eta);
+
+        return prefix + " " + etaTime + " " + etaLeft + "min(s)";
+    }
+
+    @Override
+    public String toString() {
+        return getDisplayText(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,173 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import static com.google.android.gms.location.sample.locationupdates.JsonPullParser.BEGIN_ARRAY;
+import static com.google.android.gms.location.sample.locationupdates.JsonPullParser.BEGIN_OBJECT;
+import static com.google.android.gms.location.sample.locationupdates.JsonPullParser.NAME;
+
+/**
+ * Reads a KMB stop-eta response into {@link StopEta} rows in one pass, keeping only what an
+ * {@link EtaQuery} asks for.
+ * <pre>
+ * {"type":"StopETA", "generated_timestamp":"...", "data":[
+ *     {"co":"KMB", "route":"1A", "dir":"O", "service_type":1, "seq":19, "dest_tc":"...", ...,
+ *      "eta_seq":1, "eta":"...", "rmk_tc":"", ..., "data_timestamp":"..."}, ...]}
+ * </pre>
+ * Fields of a row are read into locals, strings as {@link EtaDictionary} ids interned straight
+ * from the parser buffer, and a StopEta is only created for a row that passes the query. Once a
+ * row is rejected, and for languages the query does not keep, values are skipped undecoded.
+ */
+public class StopEtaReader {
+
+    /**
+     * Adds the rows that pass the query to the given list.
+     *
+     * @return the generated_timestamp of the response in epoch milliseconds, or
+     * {@link DateUtil#NO_TIME} if it has none.
+     */
+    public static long read(InputStream in, EtaQuery query, EtaDictionary dictionary,
+                            ArrayList<StopEta> etas) throws IOException {
+
+        JsonPullParser parser = new JsonPullParser(in);
+        long generatedTimestamp = DateUtil.NO_TIME;
+
+        if (parser.next() != BEGIN_OBJECT) {
+            throw new IOException("Stop ETA JSON is not an object");
+        }
+
+        while (parser.next() == NAME) {
+            if (parser.nameEquals("generated_timestamp")) {
+                parser.next();
+                generatedTimestamp = DateUtil.parse(parser.getText());
+            } else if (parser.nameEquals("data")) {
+                readEtas(parser, query, dictionary, etas);
+            } else {
+                parser.skipValue();
+            }
+        }
+
+        return generatedTimestamp;
+    }
+
+    private static void readEtas(JsonPullParser parser, EtaQuery query, EtaDictionary dictionary,
+                                 ArrayList<StopEta> etas) throws IOException {
+
+        if (parser.next() != BEGIN_ARRAY) {
+            throw new IOException("Stop ETA data is not an array");
+        }
+
+        boolean keepEn = query.keepsLanguage(EtaQuery.LANGUAGE_EN);
+        boolean keepTc = query.keepsLanguage(EtaQuery.LANGUAGE_TC);
+        boolean keepSc = query.keepsLanguage(EtaQuery.LANGUAGE_SC);
+        String[] routes = query.getRoutes();
+
+        while (parser.next() == BEGIN_OBJECT) {
+            boolean rejected = false;
+            int co = EtaDictionary.NONE;
+            int route = EtaDictionary.NONE;
+            byte dir = 0;
+            int serviceType = 0;
+            int seq = 0;
+            int destTc = EtaDictionary.NONE;
+            int destSc = EtaDictionary.NONE;
+            int destEn = EtaDictionary.NONE;
+            int etaSeq = 0;
+            long eta = DateUtil.NO_TIME;
+            int rmkTc = EtaDictionary.NONE;
+            int rmkSc = EtaDictionary.NONE;
+            int rmkEn = EtaDictionary.NONE;
+            long dataTimestamp = DateUtil.NO_TIME;
+
+            while (parser.next() == NAME) {
+                if (rejected) {
+                    parser.skipValue();
+                } else if (parser.nameEquals("route")) {
+                    parser.next();
+                    rejected = routes != null && !matches(routes, parser.getText());
+                    if (!rejected) {
+                        route = string(parser, dictionary);
+                    }
+                } else if (parser.nameEquals("eta_seq")) {
+                    parser.next();
+                    etaSeq = parser.getInt();
+                    rejected = !query.keepsEtaSeq(etaSeq);
+                } else if (parser.nameEquals("eta")) {
+                    parser.next();
+                    eta = parser.isNull() ? DateUtil.NO_TIME : DateUtil.parse(parser.getText());
+                } else if (parser.nameEquals("dir")) {
+                    parser.next();
+                    dir = parser.getLength() == 0 ? 0 : (byte) parser.getChars()[0];
+                } else if (parser.nameEquals("service_type")) {
+                    parser.next();
+                    serviceType = parser.getInt();
+                } else if (parser.nameEquals("seq")) {
+                    parser.next();
+                    seq = parser.getInt();
+                } else if (parser.nameEquals("co")) {
+                    parser.next();
+                    co = string(parser, dictionary);
+                } else if (keepTc && parser.nameEquals("dest_tc")) {
+                    parser.next();
+                    destTc = string(parser, dictionary);
+                } else if (keepSc && parser.nameEquals("dest_sc")) {
+                    parser.next();
+                    destSc = string(parser, dictionary);
+                } else if (keepEn && parser.nameEquals("dest_en")) {
+                    parser.next();
+                    destEn = string(parser, dictionary);
+                } else if (keepTc && parser.nameEquals("rmk_tc")) {
+                    parser.next();
+                    rmkTc = string(parser, dictionary);
+                } else if (keepSc && parser.nameEquals("rmk_sc")) {
+                    parser.next();
+                    rmkSc = string(parser, dictionary);
+                } else if (keepEn && parser.nameEquals("rmk_en")) {
+                    parser.next();
+                    rmkEn = string(parser, dictionary);
+                } else if (parser.nameEquals("data_timestamp")) {
+                    parser.next();
+                    dataTimestamp = parser.isNull() ? DateUtil.NO_TIME : DateUtil.parse(parser.getText());
+                } else {
+                    parser.skipValue();
+                }
+            }
+
+            if (rejected) {
+                continue;
+            }
+
+            StopEta stopEta = new StopEta(dictionary);
+            stopEta.co = co;
+            stopEta.route = route;
+            stopEta.dir = dir;
+            stopEta.serviceType = serviceType;
+            stopEta.seq = seq;
+            stopEta.destTc = destTc;
+            stopEta.destSc = destSc;
+            stopEta.destEn = destEn;
+            stopEta.etaSeq = etaSeq;
+            stopEta.eta = eta;
+            stopEta.rmkTc = rmkTc;
+            stopEta.rmkSc = rmkSc;
+            stopEta.rmkEn = rmkEn;
+            stopEta.dataTimestamp = dataTimestamp;
+            etas.add(stopEta);
+        }
+    }
+
+    private static int string(JsonPullParser parser, EtaDictionary dictionary) {
+        return parser.isNull() ? EtaDictionary.NONE : dictionary.intern(parser.getText());
+    }
+
+    private static boolean matches(String[] routes, CharSequence text) {
+        for (String route : routes) {
+            if (route.contentEquals(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,112 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Groups nearby stops that share a Chinese name, e.g. the platforms of one interchange, which
+ * are shown as one stop, and merges the ETAs of a group into one list.
+ * <p/>
+ * Both run in linear time, apart from sorting the merged rows, so the number of nearby stops can
+ * grow well beyond a screenful.
+ */
+public class StopGroups {
+
+    private static final Comparator<StopEta> BY_ETA = new Comparator<StopEta>() {
+        @Override
+        public int compare(StopEta a, StopEta b) {
+            // rows without a bus go last
+            boolean aNone = a.getEta() == DateUtil.NO_TIME;
+            boolean bNone = b.getEta() == DateUtil.NO_TIME;
+            if (aNone || bNone) {
+                return aNone == bNone ? 0 : (aNone ? 1 : -1);
+            }
+            return a.getEta() < b.getEta() ? -1 : (a.getEta() == b.getEta() ? 0 : 1);
+        }
+    };
+
+    /**
+     * Buckets the stops by name, ignoring surrounding and repeated white space.
+     *
+     * @return the groups in the order of their first stop, each group in the order of the stops.
+     */
+    public static ArrayList<ArrayList<BusStop>> byName(ArrayList<BusStop> stops) {
+        ArrayList<ArrayList<BusStop>> groups = new ArrayList<ArrayList<BusStop>>();
+        HashMap<String, ArrayList<BusStop>> groupByName = new HashMap<String, ArrayList<BusStop>>();
+
+        for (BusStop stop : stops) {
+            String name = normalize(stop.getNameTc());
+            ArrayList<BusStop> group = groupByName.get(name);
+            if (group == null) {
+                group = new ArrayList<BusStop>();
+                groupByName.put(name, group);
+                groups.add(group);
+            }
+            group.add(stop);
+        }
+
+        return groups;
+    }
+
+    /**
+     * Merges the ETAs of the stops of one group. A bus reported by more than one stop of the
+     * group, i.e. the same route, direction, service type and ETA sequence, is kept once.
+     *
+     * @return a new list, sorted by ETA.
+     */
+    public static ArrayList<StopEta> mergeEtas(ArrayList<ArrayList<StopEta>> etasOfStops) {
+        ArrayList<StopEta> merged = new ArrayList<StopEta>();
+        HashSet<Long> buses = new HashSet<Long>();
+
+        for (ArrayList<StopEta> etas : etasOfStops) {
+            for (StopEta eta : etas) {
+                if (buses.add(eta.getBusKey())) {
+                    merged.add(eta);
+                }
+            }
+        }
+
+        Collections.sort(merged, BY_ETA);
+        return merged;
+    }
+
+    /**
+     * @return the name without surrounding white space and with inner runs of white space turned
+     * into one space; an empty string for null.
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+
+        // most names need nothing, avoid copying them
+        boolean clean = true;
+        for (int i = 0; clean && i < name.length(); i++) {
+            char c = name.charAt(i);
+            clean = !Character.isWhitespace(c)
+                    || (c == ' ' && i > 0 && i < name.length() - 1 && name.charAt(i - 1) != ' ');
+        }
+        if (clean) {
+            return name;
+        }
+
+        StringBuilder builder = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = builder.length() > 0;
+            } else {
+                if (space) {
+                    builder.append(' ');
+                    space = false;
+                }
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
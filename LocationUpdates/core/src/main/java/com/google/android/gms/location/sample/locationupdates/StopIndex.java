@@ -0,0 +1,399 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform grid over the bus stop catalog, keyed by lat/long cell.
+ * <p/>
+ * Queries visit cells in square rings around the query point and stop as soon as no unvisited
+ * cell can hold a closer stop, so a k-nearest lookup only touches the stops around the user
+ * instead of scanning and sorting the whole catalog.
+ * <p/>
+ * Distances are the same planar degree distance the stop list has always been ranked by.
+ */
+public class StopIndex implements StopCatalog {
+
+    public static final double METERS_PER_DEGREE = 111.139 * 1000;
+
+    // about 550m; dense areas hold a few dozen stops per cell
+    private static final double CELL_SIZE = 0.005;
+
+    private final StopTable table;
+
+    private double minLat;
+    private double minLon;
+    private int rows;
+    private int columns;
+
+    private int[][] cells;
+    private int[] cellCount;
+
+    // grid of a snapshot, read in place until the first change
+    private IntBuffer mappedCellStart;
+    private IntBuffer mappedCellStops;
+
+    public StopIndex(StopTable table) {
+        this.table = table;
+
+        build();
+    }
+
+    /**
+     * Wraps a grid saved by {@link StopCatalogSnapshot} without copying it, given as each cell's
+     * stops laid end to end with cellStart[cell] .. cellStart[cell + 1] marking the stops of a cell.
+     */
+    StopIndex(StopTable table, double minLat, double minLon, int rows, int columns,
+              IntBuffer cellStart, IntBuffer cellStops) {
+        this.table = table;
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.rows = rows;
+        this.columns = columns;
+
+        mappedCellStart = cellStart;
+        mappedCellStops = cellStops;
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    double getMinLat() {
+        return minLat;
+    }
+
+    double getMinLon() {
+        return minLon;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getCellCount(int cell) {
+        if (mappedCellStart != null) {
+            return mappedCellStart.get(cell + 1) - mappedCellStart.get(cell);
+        }
+        return cellCount[cell];
+    }
+
+    int getCellStop(int cell, int i) {
+        if (mappedCellStart != null) {
+            return mappedCellStops.get(mappedCellStart.get(cell) + i);
+        }
+        return cells[cell][i];
+    }
+
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double latDiff = lat1 - lat2;
+        double lonDiff = lon1 - lon2;
+
+        return Math.sqrt(latDiff * latDiff + lonDiff * lonDiff);
+    }
+
+    public double distance(int stop, double lat, double lon) {
+        return distance(table.getLat(stop), table.getLon(stop), lat, lon);
+    }
+
+    /**
+     * Finds the k stops closest to the given point.
+     *
+     * @param outStops     receives the stop indices, closest first.
+     * @param outDistances receives the matching distances.
+     * @return the number of stops found, at most k.
+     */
+    public int nearest(double lat, double lon, int k, int[] outStops, double[] outDistances) {
+        if (k <= 0 || table.size() == 0) {
+            return 0;
+        }
+
+        int row = rowOf(lat);
+        int column = columnOf(lon);
+        int found = 0;
+
+        for (int ring = firstRing(row, column); ring <= lastRing(row, column); ring++) {
+            if (found == k && outDistances[k - 1] <= ringBound(lat, lon, row, column, ring)) {
+                break;
+            }
+
+            int r0 = Math.max(row - ring, 0);
+            int r1 = Math.min(row + ring, rows - 1);
+            int c0 = Math.max(column - ring, 0);
+            int c1 = Math.min(column + ring, columns - 1);
+
+            for (int r = r0; r <= r1; r++) {
+                boolean edgeRow = r == row - ring || r == row + ring;
+                for (int c = c0; c <= c1; c++) {
+                    if (!edgeRow && c != column - ring && c != column + ring) {
+                        // interior of the ring was visited already, jump to the far edge
+                        if (column + ring > c1) {
+                            break;
+                        }
+                        c = column + ring - 1;
+                        continue;
+                    }
+
+                    int cell = r * columns + c;
+                    int count = getCellCount(cell);
+                    for (int i = 0; i < count; i++) {
+                        int stop = getCellStop(cell, i);
+                        double d = distance(stop, lat, lon);
+                        if (found < k) {
+                            found = insert(stop, d, found, outStops, outDistances);
+                        } else if (d < outDistances[k - 1]) {
+                            insert(stop, d, k - 1, outStops, outDistances);
+                        }
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    @Override
+    public BusStop findById(String stopId) {
+        int stop = table.indexOf(stopId);
+        return stop < 0 ? null : new BusStop(table, stop, 0);
+    }
+
+    @Override
+    public List<BusStop> findNearest(double lat, double lon, int count) {
+        int[] stops = new int[count];
+        double[] distances = new double[count];
+        int found = nearest(lat, lon, count, stops, distances);
+
+        ArrayList<BusStop> busStops = new ArrayList<BusStop>(found);
+        for (int i = 0; i < found; i++) {
+            busStops.add(new BusStop(table, stops[i], distances[i]));
+        }
+        return busStops;
+    }
+
+    /**
+     * Finds every stop within the given radius of a point.
+     *
+     * @return the stop indices, closest first.
+     */
+    public int[] withinRadius(double lat, double lon, double radiusMeter) {
+        double radius = radiusMeter / METERS_PER_DEGREE;
+
+        int r0 = Math.max(rowOf(lat - radius), 0);
+        int r1 = Math.min(rowOf(lat + radius), rows - 1);
+        int c0 = Math.max(columnOf(lon - radius), 0);
+        int c1 = Math.min(columnOf(lon + radius), columns - 1);
+
+        int[] stops = new int[16];
+        double[] distances = new double[16];
+        int found = 0;
+
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * columns + c;
+                int count = getCellCount(cell);
+                for (int i = 0; i < count; i++) {
+                    int stop = getCellStop(cell, i);
+                    double d = distance(stop, lat, lon);
+                    if (d > radius) {
+                        continue;
+                    }
+                    if (found == stops.length) {
+                        stops = Arrays.copyOf(stops, found * 2);
+                        distances = Arrays.copyOf(distances, found * 2);
+                    }
+                    found = insert(stop, d, found, stops, distances);
+                }
+            }
+        }
+
+        return Arrays.copyOf(stops, found);
+    }
+
+    /**
+     * Inserts into a list kept sorted by distance, dropping whatever sits at position n.
+     * Result lists are short, so shifting is cheaper than a heap.
+     */
+    static int insert(int stop, double d, int n, int[] stops, double[] distances) {
+        int i = n;
+        while (i > 0 && distances[i - 1] > d) {
+            stops[i] = stops[i - 1];
+            distances[i] = distances[i - 1];
+            i--;
+        }
+        stops[i] = stop;
+        distances[i] = d;
+
+        return n + 1;
+    }
+
+    /**
+     * Adds a stop appended to the table.
+     */
+    public void add(int stop) {
+        copyMapped();
+        if (!inBounds(table.getLat(stop), table.getLon(stop))) {
+            build();
+            return;
+        }
+
+        int cell = cellOf(stop);
+        if (cellCount[cell] == cells[cell].length) {
+            cells[cell] = Arrays.copyOf(cells[cell], Math.max(cellCount[cell] * 2, 4));
+        }
+        cells[cell][cellCount[cell]++] = stop;
+    }
+
+    /**
+     * Takes a stop out of the index before it is removed from the table or moved.
+     */
+    public void remove(int stop) {
+        copyMapped();
+        int cell = cellOf(stop);
+        int[] stops = cells[cell];
+
+        for (int i = 0; i < cellCount[cell]; i++) {
+            if (stops[i] == stop) {
+                stops[i] = stops[--cellCount[cell]];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Follows a stop the table moved from one row to another, see {@link StopTable#remove(int)}.
+     */
+    public void renumber(int from, int to) {
+        copyMapped();
+        int cell = cellOf(to);
+        int[] stops = cells[cell];
+
+        for (int i = 0; i < cellCount[cell]; i++) {
+            if (stops[i] == from) {
+                stops[i] = to;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copies the grid of a snapshot into per-cell arrays before it changes.
+     */
+    private void copyMapped() {
+        if (mappedCellStart == null) {
+            return;
+        }
+
+        cells = new int[rows * columns][];
+        cellCount = new int[rows * columns];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cellCount[cell] = getCellCount(cell);
+            cells[cell] = new int[cellCount[cell]];
+            for (int i = 0; i < cellCount[cell]; i++) {
+                cells[cell][i] = getCellStop(cell, i);
+            }
+        }
+
+        mappedCellStart = null;
+        mappedCellStops = null;
+    }
+
+    private boolean inBounds(double lat, double lon) {
+        int row = rowOf(lat);
+        int column = columnOf(lon);
+
+        return row >= 0 && row < rows && column >= 0 && column < columns;
+    }
+
+    private void build() {
+        int size = table.size();
+        double maxLat = -Double.MAX_VALUE;
+        double maxLon = -Double.MAX_VALUE;
+        minLat = Double.MAX_VALUE;
+        minLon = Double.MAX_VALUE;
+
+        for (int i = 0; i < size; i++) {
+            minLat = Math.min(minLat, table.getLat(i));
+            minLon = Math.min(minLon, table.getLon(i));
+            maxLat = Math.max(maxLat, table.getLat(i));
+            maxLon = Math.max(maxLon, table.getLon(i));
+        }
+
+        if (size == 0) {
+            minLat = 0;
+            minLon = 0;
+            maxLat = 0;
+            maxLon = 0;
+        }
+
+        rows = (int) ((maxLat - minLat) / CELL_SIZE) + 1;
+        columns = (int) ((maxLon - minLon) / CELL_SIZE) + 1;
+
+        cells = new int[rows * columns][];
+        cellCount = new int[rows * columns];
+
+        for (int i = 0; i < size; i++) {
+            cellCount[cellOf(i)]++;
+        }
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = new int[cellCount[cell]];
+            cellCount[cell] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            int cell = cellOf(i);
+            cells[cell][cellCount[cell]++] = i;
+        }
+    }
+
+    private int cellOf(int stop) {
+        int row = Math.min(Math.max(rowOf(table.getLat(stop)), 0), rows - 1);
+        int column = Math.min(Math.max(columnOf(table.getLon(stop)), 0), columns - 1);
+
+        return row * columns + column;
+    }
+
+    private int rowOf(double lat) {
+        return (int) Math.floor((lat - minLat) / CELL_SIZE);
+    }
+
+    private int columnOf(double lon) {
+        return (int) Math.floor((lon - minLon) / CELL_SIZE);
+    }
+
+    /**
+     * The first ring that overlaps the grid; a query far outside the catalog skips the empty ones.
+     */
+    private int firstRing(int row, int column) {
+        int rowGap = Math.max(Math.max(row - (rows - 1), -row), 0);
+        int columnGap = Math.max(Math.max(column - (columns - 1), -column), 0);
+
+        return Math.max(rowGap, columnGap);
+    }
+
+    private int lastRing(int row, int column) {
+        return Math.max(Math.max(row, rows - 1 - row), Math.max(column, columns - 1 - column));
+    }
+
+    /**
+     * Distance from the query point to the nearest point outside rings 0 .. ring - 1, i.e. a lower
+     * bound for every stop not visited yet.
+     */
+    private double ringBound(double lat, double lon, int row, int column, int ring) {
+        if (ring == 0) {
+            return 0;
+        }
+
+        double south = lat - (minLat + (row - ring + 1) * CELL_SIZE);
+        double north = (minLat + (row + ring) * CELL_SIZE) - lat;
+        double west = lon - (minLon + (column - ring + 1) * CELL_SIZE);
+        double east = (minLon + (column + ring) * CELL_SIZE) - lon;
+
+        return Math.min(Math.min(south, north), Math.min(west, east));
+    }
+}
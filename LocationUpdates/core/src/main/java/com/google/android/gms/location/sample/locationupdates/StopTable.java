@@ -0,0 +1,299 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Column store for the bus stop catalog. Each stop is a row index; coordinates live in primitive
+ * columns and the English, Traditional and Simplified Chinese names are ids into one shared name
+ * pool, since many stops (both directions of a road, every platform of an interchange) share names.
+ * <p/>
+ * A table opened from a {@link StopCatalogSnapshot} reads its columns in place from the mapped
+ * file, decoding only the strings asked for, and copies them into the heap on the first change.
+ */
+public class StopTable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private int size;
+
+    private String[] stopId;
+    private double[] lat;
+    private double[] lon;
+    private int[] nameEn;
+    private int[] nameTc;
+    private int[] nameSc;
+
+    private String[] names;
+    private int nameCount;
+    // built on first add for tables loaded from a snapshot
+    private HashMap<String, Integer> nameIds;
+    // built on first lookup
+    private HashMap<String, Integer> rows;
+
+    // columns of a snapshot, null once copied into the arrays above
+    private DoubleBuffer mappedLat;
+    private DoubleBuffer mappedLon;
+    private IntBuffer mappedNameEn;
+    private IntBuffer mappedNameTc;
+    private IntBuffer mappedNameSc;
+    // offsets of the stop ids, then of the names, into the string bytes
+    private IntBuffer mappedOffsets;
+    private ByteBuffer mappedStrings;
+
+    public StopTable() {
+        this(1024);
+    }
+
+    public StopTable(int capacity) {
+        capacity = Math.max(capacity, 16);
+
+        stopId = new String[capacity];
+        lat = new double[capacity];
+        lon = new double[capacity];
+        nameEn = new int[capacity];
+        nameTc = new int[capacity];
+        nameSc = new int[capacity];
+
+        names = new String[capacity];
+        nameIds = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Wraps the columns of a {@link StopCatalogSnapshot} without copying them.
+     */
+    StopTable(int size, int nameCount, DoubleBuffer lat, DoubleBuffer lon,
+              IntBuffer nameEn, IntBuffer nameTc, IntBuffer nameSc, IntBuffer offsets, ByteBuffer strings) {
+        this.size = size;
+        this.nameCount = nameCount;
+        mappedLat = lat;
+        mappedLon = lon;
+        mappedNameEn = nameEn;
+        mappedNameTc = nameTc;
+        mappedNameSc = nameSc;
+        mappedOffsets = offsets;
+        mappedStrings = strings;
+    }
+
+    /**
+     * Appends a stop.
+     *
+     * @return the row of the new stop.
+     */
+    public int add(String stopId, String nameEn, String nameTc, String nameSc, double lat, double lon) {
+        copyMapped();
+        if (size == this.stopId.length) {
+            grow(Math.max(size * 2, 16));
+        }
+
+        int row = size++;
+        this.stopId[row] = stopId;
+        this.lat[row] = lat;
+        this.lon[row] = lon;
+        this.nameEn[row] = internName(nameEn);
+        this.nameTc[row] = internName(nameTc);
+        this.nameSc[row] = internName(nameSc);
+
+        if (rows != null) {
+            rows.put(stopId, row);
+        }
+
+        return row;
+    }
+
+    /**
+     * Replaces the names and position of a stop.
+     */
+    public void set(int row, String nameEn, String nameTc, String nameSc, double lat, double lon) {
+        copyMapped();
+        this.lat[row] = lat;
+        this.lon[row] = lon;
+        this.nameEn[row] = internName(nameEn);
+        this.nameTc[row] = internName(nameTc);
+        this.nameSc[row] = internName(nameSc);
+    }
+
+    /**
+     * Removes a stop by moving the last row into its place.
+     *
+     * @return the former row of the stop now at {@code row}, or -1 if the last row was removed.
+     */
+    public int remove(int row) {
+        copyMapped();
+        int last = --size;
+
+        if (rows != null) {
+            rows.remove(stopId[row]);
+        }
+
+        if (row == last) {
+            stopId[last] = null;
+            return -1;
+        }
+
+        stopId[row] = stopId[last];
+        lat[row] = lat[last];
+        lon[row] = lon[last];
+        nameEn[row] = nameEn[last];
+        nameTc[row] = nameTc[last];
+        nameSc[row] = nameSc[last];
+        stopId[last] = null;
+
+        if (rows != null) {
+            rows.put(stopId[row], row);
+        }
+
+        return last;
+    }
+
+    /**
+     * @return the row of the stop, or -1 if it is not in the table.
+     */
+    public int indexOf(String stopId) {
+        if (rows == null) {
+            rows = new HashMap<String, Integer>(size * 2);
+            for (int i = 0; i < size; i++) {
+                rows.put(getStopID(i), i);
+            }
+        }
+
+        Integer row = rows.get(stopId);
+        return row == null ? -1 : row;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getStopID(int row) {
+        return mappedLat != null ? mappedString(row) : stopId[row];
+    }
+
+    public double getLat(int row) {
+        return mappedLat != null ? mappedLat.get(row) : lat[row];
+    }
+
+    public double getLon(int row) {
+        return mappedLat != null ? mappedLon.get(row) : lon[row];
+    }
+
+    public int getNameEnId(int row) {
+        return mappedLat != null ? mappedNameEn.get(row) : nameEn[row];
+    }
+
+    public int getNameTcId(int row) {
+        return mappedLat != null ? mappedNameTc.get(row) : nameTc[row];
+    }
+
+    public int getNameScId(int row) {
+        return mappedLat != null ? mappedNameSc.get(row) : nameSc[row];
+    }
+
+    public String getNameEn(int row) {
+        return getName(getNameEnId(row));
+    }
+
+    public String getNameTc(int row) {
+        return getName(getNameTcId(row));
+    }
+
+    public String getNameSc(int row) {
+        return getName(getNameScId(row));
+    }
+
+    public String getName(int nameId) {
+        if (mappedLat == null) {
+            return names[nameId];
+        }
+        // an empty name was written for a missing one
+        String name = mappedString(size + nameId);
+        return name.length() == 0 ? null : name;
+    }
+
+    public int nameCount() {
+        return nameCount;
+    }
+
+    private int internName(String name) {
+        if (nameIds == null) {
+            nameIds = new HashMap<String, Integer>();
+            for (int i = 0; i < nameCount; i++) {
+                nameIds.put(names[i], i);
+            }
+        }
+
+        Integer id = nameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, Math.max(nameCount * 2, 16));
+        }
+        names[nameCount] = name;
+        nameIds.put(name, nameCount);
+
+        return nameCount++;
+    }
+
+    private String mappedString(int index) {
+        int start = mappedOffsets.get(index);
+        byte[] bytes = new byte[mappedOffsets.get(index + 1) - start];
+
+        ByteBuffer strings = mappedStrings.duplicate();
+        strings.position(start);
+        strings.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Copies the columns of a snapshot into the heap before the table changes.
+     */
+    private void copyMapped() {
+        if (mappedLat == null) {
+            return;
+        }
+
+        int capacity = Math.max(size, 16);
+        stopId = new String[capacity];
+        lat = new double[capacity];
+        lon = new double[capacity];
+        nameEn = new int[capacity];
+        nameTc = new int[capacity];
+        nameSc = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            stopId[i] = getStopID(i);
+            lat[i] = getLat(i);
+            lon[i] = getLon(i);
+            nameEn[i] = getNameEnId(i);
+            nameTc[i] = getNameTcId(i);
+            nameSc[i] = getNameScId(i);
+        }
+
+        names = new String[Math.max(nameCount, 16)];
+        for (int i = 0; i < nameCount; i++) {
+            names[i] = getName(i);
+        }
+
+        mappedLat = null;
+        mappedLon = null;
+        mappedNameEn = null;
+        mappedNameTc = null;
+        mappedNameSc = null;
+        mappedOffsets = null;
+        mappedStrings = null;
+    }
+
+    private void grow(int capacity) {
+        stopId = Arrays.copyOf(stopId, capacity);
+        lat = Arrays.copyOf(lat, capacity);
+        lon = Arrays.copyOf(lon, capacity);
+        nameEn = Arrays.copyOf(nameEn, capacity);
+        nameTc = Arrays.copyOf(nameTc, capacity);
+        nameSc = Arrays.copyOf(nameSc, capacity);
+    }
+}
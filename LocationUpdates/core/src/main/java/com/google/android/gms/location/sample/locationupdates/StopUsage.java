@@ -0,0 +1,239 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Which stops the user looks at, and at what time of day, so their ETAs can be fetched ahead of
+ * time; see {@link EtaPrefetcher}.
+ * <p/>
+ * A stop counts once per hour in which its ETAs were shown, in the slot of that hour of the day,
+ * so a stop passed on the way to work every morning scores in the morning slots whatever the
+ * number of refreshes. The stops of the last nearby list shown are kept as well. Saved as a small
+ * text file of at most {@link #MAX_STOPS} stops:
+ * <pre>
+ * N stopId stopId ...
+ * U stopId lastHour count0 ... count23
+ * </pre>
+ */
+public class StopUsage {
+
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+    private static final int HOURS_PER_DAY = 24;
+
+    /**
+     * Stops tracked at most; the least shown is dropped to make room for a new one.
+     */
+    private static final int MAX_STOPS = 256;
+
+    private static class Usage {
+        long lastHour = -1;
+        final int[] counts = new int[HOURS_PER_DAY];
+
+        int total() {
+            int total = 0;
+            for (int count : counts) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    private final HashMap<String, Usage> usages = new HashMap<String, Usage>();
+    private List<String> lastNearby = Collections.emptyList();
+
+    /**
+     * @return the usage saved in the file, or an empty one if it is missing or corrupt.
+     */
+    public static StopUsage load(File file) {
+        StopUsage stopUsage = new StopUsage();
+        if (!file.exists()) {
+            return stopUsage;
+        }
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(" ");
+                    if (fields[0].equals("N")) {
+                        ArrayList<String> nearby = new ArrayList<String>();
+                        for (int i = 1; i < fields.length; i++) {
+                            nearby.add(fields[i]);
+                        }
+                        stopUsage.lastNearby = Collections.unmodifiableList(nearby);
+                    } else if (fields[0].equals("U") && fields.length == 3 + HOURS_PER_DAY) {
+                        Usage usage = new Usage();
+                        usage.lastHour = Long.parseLong(fields[2]);
+                        for (int i = 0; i < HOURS_PER_DAY; i++) {
+                            usage.counts[i] = Integer.parseInt(fields[3 + i]);
+                        }
+                        stopUsage.usages.put(fields[1], usage);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            return new StopUsage();
+        } catch (NumberFormatException e) {
+            return new StopUsage();
+        }
+
+        return stopUsage;
+    }
+
+    /**
+     * Replaces the file with the usage, see {@link AtomicFileWriter}.
+     */
+    public synchronized void save(File file) throws IOException {
+        AtomicFileWriter.replace(file, new AtomicFileWriter.Content() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                Writer writer = new OutputStreamWriter(out, "UTF-8");
+                write(writer);
+                writer.flush();
+            }
+        });
+    }
+
+    private void write(Writer writer) throws IOException {
+        writer.write("N");
+        for (String stopId : lastNearby) {
+            writer.write(" ");
+            writer.write(stopId);
+        }
+        writer.write("\n");
+
+        for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+            Usage usage = entry.getValue();
+            writer.write("U " + entry.getKey() + " " + usage.lastHour);
+            for (int count : usage.counts) {
+                writer.write(" " + count);
+            }
+            writer.write("\n");
+        }
+    }
+
+    /**
+     * Counts the stops as shown at the given time, and keeps them as the last nearby list.
+     *
+     * @return true if anything changed and should be saved.
+     */
+    public synchronized boolean recordShown(List<String> stopIds, long time) {
+        long hour = localHour(time);
+        boolean changed = false;
+
+        for (String stopId : stopIds) {
+            Usage usage = usages.get(stopId);
+            if (usage == null) {
+                if (usages.size() >= MAX_STOPS) {
+                    evictLeastShown();
+                }
+                usage = new Usage();
+                usages.put(stopId, usage);
+            }
+            if (usage.lastHour != hour) {
+                usage.lastHour = hour;
+                usage.counts[(int) (hour % HOURS_PER_DAY)]++;
+                changed = true;
+            }
+        }
+
+        if (!lastNearby.equals(stopIds)) {
+            lastNearby = Collections.unmodifiableList(new ArrayList<String>(stopIds));
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    public synchronized List<String> getLastNearby() {
+        return lastNearby;
+    }
+
+    /**
+     * Ranks the stops by how often they were shown in the hour of the day of the given time and
+     * the hours either side of it, then by how often they were shown at all.
+     *
+     * @return at most count stops, only those shown around that time of day.
+     */
+    public synchronized List<String> getLikelyStops(long time, int count) {
+        int hourOfDay = (int) (localHour(time) % HOURS_PER_DAY);
+
+        final HashMap<String, Integer> scores = new HashMap<String, Integer>();
+        final HashMap<String, Integer> totals = new HashMap<String, Integer>();
+        ArrayList<String> likely = new ArrayList<String>();
+
+        for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+            int[] counts = entry.getValue().counts;
+            int score = counts[(hourOfDay + HOURS_PER_DAY - 1) % HOURS_PER_DAY]
+                    + 2 * counts[hourOfDay]
+                    + counts[(hourOfDay + 1) % HOURS_PER_DAY];
+            if (score > 0) {
+                scores.put(entry.getKey(), score);
+                totals.put(entry.getKey(), entry.getValue().total());
+                likely.add(entry.getKey());
+            }
+        }
+
+        Collections.sort(likely, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int byScore = scores.get(b).compareTo(scores.get(a));
+                return byScore != 0 ? byScore : totals.get(b).compareTo(totals.get(a));
+            }
+        });
+
+        return likely.size() > count ? new ArrayList<String>(likely.subList(0, count)) : likely;
+    }
+
+    /**
+     * @return the stops of both lists, each once, in order.
+     */
+    public static List<String> union(Collection<String> first, Collection<String> second) {
+        ArrayList<String> union = new ArrayList<String>(first);
+        for (String stopId : second) {
+            if (!union.contains(stopId)) {
+                union.add(stopId);
+            }
+        }
+        return union;
+    }
+
+    private void evictLeastShown() {
+        String leastShown = null;
+        int leastTotal = Integer.MAX_VALUE;
+        for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+            int total = entry.getValue().total();
+            if (total < leastTotal) {
+                leastShown = entry.getKey();
+                leastTotal = total;
+            }
+        }
+        usages.remove(leastShown);
+    }
+
+    /**
+     * @return hours since the epoch in the device time zone.
+     */
+    private static long localHour(long time) {
+        long local = time + TimeZone.getDefault().getOffset(time);
+        return Math.max(0, local / MILLIS_PER_HOUR);
+    }
+}
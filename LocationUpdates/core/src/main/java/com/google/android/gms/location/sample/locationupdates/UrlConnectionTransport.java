@@ -0,0 +1,72 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link FetchEngine.Transport} over {@link HttpURLConnection}. Bodies are always read to the end
+ * and closed, which lets the platform connection pool reuse the keep-alive connection for the
+ * next request to the same host.
+ */
+public class UrlConnectionTransport implements FetchEngine.Transport {
+
+    @Override
+    public FetchEngine.Response execute(String method, String url, Map<String, String> headers,
+                                        int timeoutMillis) throws IOException {
+        long start = System.currentTimeMillis();
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setRequestProperty("Connection", "keep-alive");
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            int status = connection.getResponseCode();
+
+            InputStream stream = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            byte[] body = readFully(stream);
+
+            Map<String, String> responseHeaders = new HashMap<String, String>();
+            for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+                if (header.getKey() != null && !header.getValue().isEmpty()) {
+                    responseHeaders.put(header.getKey(), header.getValue().get(0));
+                }
+            }
+
+            return new FetchEngine.Response(status, responseHeaders, body,
+                    System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            // a failed exchange may leave the socket in an unknown state, do not pool it
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    private static byte[] readFully(InputStream stream) throws IOException {
+        if (stream == null) {
+            return new byte[0];
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        try {
+            int n;
+            while ((n = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            stream.close();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,36 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BusStopTest {
+
+    @Test
+    public void displayNameFallsBackToEnglishThenStopId() {
+        assertEquals("\u7ad9\u982d", stop("\u7ad9\u982d", "Terminus").getDisplayName());
+        assertEquals("Terminus", stop(null, "Terminus").getDisplayName());
+        assertEquals("Terminus", stop("", "Terminus").getDisplayName());
+        assertEquals("A", stop(null, null).getDisplayName());
+        assertEquals("A 111m", stop(null, null).toString());
+    }
+
+    @Test
+    public void copiesRowOfTable() {
+        StopTable table = new StopTable();
+        table.add("A", "Alpha", null, "A", 22.3010, 114.1710);
+        BusStop stop = new BusStop(table, 0, 0.002);
+
+        // the table changing afterwards does not change the stop
+        table.set(0, "Alpha Terminus", "A", "A", 22.4, 114.2);
+
+        assertEquals(0, stop.getRow());
+        assertEquals("Alpha", stop.getDisplayName());
+        assertEquals(22.3010, stop.getLat(), 0);
+        assertEquals(222, stop.getDistanceInMeters());
+    }
+
+    private static BusStop stop(String nameTc, String nameEn) {
+        return new BusStop("A", nameEn, nameTc, null, 22.3010, 114.1710, 0.001);
+    }
+}
@@ -0,0 +1,128 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DateUtilTest {
+
+    // 2019-06-01T07:48:05Z
+    private static final long TIME = 1559375285000L;
+
+    private static final long MINUTE = 60 * 1000;
+
+    private TimeZone defaultTimeZone;
+
+    @Before
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Hong_Kong"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+    }
+
+    @Test
+    public void parsesOffsets() {
+        assertEquals(TIME, DateUtil.parse("2019-06-01T15:48:05+08:00"));
+        assertEquals(TIME, DateUtil.parse("2019-06-01T15:48:05+0800"));
+        assertEquals(TIME, DateUtil.parse("2019-06-01T07:48:05Z"));
+        assertEquals(TIME, DateUtil.parse("2019-06-01T07:48:05"));
+        assertEquals(TIME, DateUtil.parse("2019-06-01 07:48:05"));
+        assertEquals(TIME, DateUtil.parse("2019-06-01T04:18:05-03:30"));
+    }
+
+    @Test
+    public void parsesFractions() {
+        assertEquals(TIME + 500, DateUtil.parse("2019-06-01T15:48:05.5+08:00"));
+        assertEquals(TIME + 123, DateUtil.parse("2019-06-01T15:48:05.123456+08:00"));
+    }
+
+    @Test
+    public void parsesDatesAcrossLeapDays() {
+        assertEquals(0, DateUtil.parse("1970-01-01T00:00:00Z"));
+        assertEquals(951782400000L, DateUtil.parse("2000-02-29T00:00:00Z"));
+        assertEquals(-86400000L, DateUtil.parse("1969-12-31T00:00:00Z"));
+    }
+
+    @Test
+    public void parsesWithinText() {
+        String text = "\"eta\":\"2019-06-01T15:48:05+08:00\"";
+        assertEquals(TIME, DateUtil.parse(text, 7, text.length() - 1));
+    }
+
+    @Test
+    public void rejectsMalformed() {
+        assertEquals(DateUtil.NO_TIME, DateUtil.parse(null));
+        assertEquals(DateUtil.NO_TIME, DateUtil.parse(""));
+        assertEquals(DateUtil.NO_TIME, DateUtil.parse("2019-06-01"));
+        assertEquals(DateUtil.NO_TIME, DateUtil.parse("2019/06/01T15:48:05+08:00"));
+        assertEquals(DateUtil.NO_TIME, DateUtil.parse("2019-13-01T15:48:05+08:00"));
+        assertEquals(DateUtil.NO_TIME, DateUtil.parse("2019-06-01T24:48:05+08:00"));
+        assertEquals(DateUtil.NO_TIME, DateUtil.parse("2019-06-01T15:4a:05+08:00"));
+        assertEquals(DateUtil.NO_TIME, DateUtil.parse("2019-06-01T15:48:05+0x:00"));
+        assertEquals(DateUtil.NO_TIME, DateUtil.parse("2019-06-01T15:48:05+08:00 "));
+    }
+
+    @Test
+    public void formatsInDeviceTimeZone() {
+        assertEquals("2019-06-01 15:48", DateUtil.returnDatetimeString(TIME));
+        assertEquals("2019-06-01 15:48", DateUtil.returnDatetimeString("2019-06-01T07:48:05Z"));
+        assertEquals("15:48", DateUtil.returnTimeString(TIME));
+        assertEquals("2000-03-01 07:59", DateUtil.returnDatetimeString(DateUtil.parse("2000-02-29T23:59:00Z")));
+
+        assertEquals("", DateUtil.returnDatetimeString(DateUtil.NO_TIME));
+        assertEquals("", DateUtil.returnTimeString(DateUtil.NO_TIME));
+    }
+
+    @Test
+    public void countsWholeMinutes() {
+        assertEquals(0, DateUtil.minutesUntil(TIME, TIME));
+        assertEquals(0, DateUtil.minutesUntil(TIME - 1, TIME));
+        assertEquals(0, DateUtil.minutesUntil(TIME + MINUTE - 1, TIME));
+        assertEquals(1, DateUtil.minutesUntil(TIME + MINUTE, TIME));
+        assertEquals(2, DateUtil.minutesUntil(TIME + 3 * MINUTE - 1, TIME));
+
+        assertEquals(0, DateUtil.minutesSince(TIME + 1, TIME));
+        assertEquals(0, DateUtil.minutesSince(TIME - MINUTE + 1, TIME));
+        assertEquals(1, DateUtil.minutesSince(TIME - MINUTE, TIME));
+    }
+
+    @Test
+    public void nextMinuteChangeIsWhereMinutesUntilChanges() {
+        long time = TIME + 5 * MINUTE + 12345;
+        for (long now = TIME; now < time; now += 997) {
+            long next = DateUtil.nextMinuteChange(time, now);
+            if (DateUtil.minutesUntil(time, now) == 0) {
+                assertEquals(DateUtil.NO_TIME, next);
+                continue;
+            }
+
+            assertTrue(next > now);
+            assertEquals(DateUtil.minutesUntil(time, now), DateUtil.minutesUntil(time, next - 1));
+            assertEquals(DateUtil.minutesUntil(time, now) - 1, DateUtil.minutesUntil(time, next));
+        }
+
+        assertEquals(DateUtil.NO_TIME, DateUtil.nextMinuteChange(DateUtil.NO_TIME, TIME));
+        assertEquals(DateUtil.NO_TIME, DateUtil.nextMinuteChange(TIME - MINUTE, TIME));
+    }
+
+    @Test
+    public void nextMinuteChangeSinceIsWhereMinutesSinceChanges() {
+        long time = TIME - 12345;
+        for (long now = TIME; now < TIME + 5 * MINUTE; now += 997) {
+            long next = DateUtil.nextMinuteChangeSince(time, now);
+
+            assertTrue(next > now);
+            assertEquals(DateUtil.minutesSince(time, now), DateUtil.minutesSince(time, next - 1));
+            assertEquals(DateUtil.minutesSince(time, now) + 1, DateUtil.minutesSince(time, next));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EtaCacheTest {
+
+    private static final long TTL = 30 * 1000;
+
+    private static final long NOW = 1559375285000L;
+
+    @Test
+    public void entryIsFreshForTheTtl() {
+        EtaCache cache = new EtaCache(4, TTL);
+        EtaCache.Entry entry = entry(NOW);
+
+        assertTrue(cache.isFresh(entry, NOW));
+        assertTrue(cache.isFresh(entry, NOW + TTL - 1));
+        assertFalse(cache.isFresh(entry, NOW + TTL));
+    }
+
+    @Test
+    public void returnsStaleEntries() {
+        EtaCache cache = new EtaCache(4, TTL);
+        EtaCache.Entry entry = entry(NOW - 10 * TTL);
+        cache.put("A", entry);
+
+        assertSame(entry, cache.get("A"));
+        assertFalse(cache.isFresh(cache.get("A"), NOW));
+        assertNull(cache.get("B"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        EtaCache cache = new EtaCache(2, TTL);
+        cache.put("A", entry(NOW));
+        cache.put("B", entry(NOW));
+        // reading A makes B the least recently used
+        cache.get("A");
+        cache.put("C", entry(NOW));
+
+        assertNull(cache.get("B"));
+        assertTrue(cache.get("A") != null && cache.get("C") != null);
+    }
+
+    @Test
+    public void replacesAndClearsEntries() {
+        EtaCache cache = new EtaCache(2, TTL);
+        cache.put("A", entry(NOW - TTL));
+        EtaCache.Entry newer = entry(NOW);
+        cache.put("A", newer);
+
+        assertSame(newer, cache.get("A"));
+
+        cache.clear();
+        assertNull(cache.get("A"));
+    }
+
+    private static EtaCache.Entry entry(long fetchedAt) {
+        return new EtaCache.Entry(new ArrayList<StopEta>(), fetchedAt - 1000, fetchedAt);
+    }
+}
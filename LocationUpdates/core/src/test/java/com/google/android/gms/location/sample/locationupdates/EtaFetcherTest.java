@@ -0,0 +1,172 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EtaFetcherTest {
+
+    private static final String BASE_URL = "https://example.com/stop-eta/";
+
+    private static final long NOW = 1559375285000L;
+
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<String, AtomicInteger>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile int status = 200;
+
+    private FetchEngine engine;
+    private EtaCache cache;
+    private EtaFetcher fetcher;
+
+    @Before
+    public void setUp() {
+        engine = new FetchEngine(new FetchEngine.Transport() {
+            @Override
+            public FetchEngine.Response execute(String method, String url, Map<String, String> headers,
+                                                int timeoutMillis) throws IOException {
+                calls.putIfAbsent(url, new AtomicInteger());
+                calls.get(url).incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                if (status < 0) {
+                    throw new IOException("unreachable");
+                }
+                return new FetchEngine.Response(status, Collections.<String, String>emptyMap(), new byte[0], 1);
+            }
+        }, 4, 5000, new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                runnable.run();
+            }
+        });
+        cache = new EtaCache(16, 30 * 1000);
+        fetcher = new EtaFetcher(engine, cache, BASE_URL, new EtaFetcher.Parser() {
+            @Override
+            public EtaCache.Entry parse(byte[] body, long fetchedAt) {
+                return new EtaCache.Entry(new ArrayList<StopEta>(), fetchedAt, fetchedAt);
+            }
+        }, new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return NOW;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void joinsFetchInFlight() throws InterruptedException {
+        Recorder recorder = new Recorder(4);
+
+        assertTrue(fetcher.fetch("A", recorder));
+        assertFalse(fetcher.fetch("A", recorder));
+        assertFalse(fetcher.fetch("A", recorder));
+        assertTrue(fetcher.fetch("B", recorder));
+        assertTrue(fetcher.isFetching("A"));
+
+        release.countDown();
+        recorder.await();
+
+        assertEquals(3, recorder.cached.get("A").get());
+        assertEquals(1, recorder.cached.get("B").get());
+        assertEquals(1, calls.get(BASE_URL + "A").get());
+        assertEquals(1, calls.get(BASE_URL + "B").get());
+        assertFalse(fetcher.isFetching("A"));
+        assertEquals(NOW, cache.get("A").getFetchedAt());
+    }
+
+    @Test
+    public void fetchesAgainOnceFinished() throws InterruptedException {
+        release.countDown();
+
+        Recorder first = new Recorder(1);
+        assertTrue(fetcher.fetch("A", first));
+        first.await();
+
+        Recorder second = new Recorder(1);
+        assertTrue(fetcher.fetch("A", second));
+        second.await();
+
+        assertEquals(2, calls.get(BASE_URL + "A").get());
+    }
+
+    @Test
+    public void tellsEveryListenerOfFailure() throws InterruptedException {
+        status = -1;
+        Recorder recorder = new Recorder(2);
+        fetcher.fetch("A", recorder);
+        fetcher.fetch("A", recorder);
+
+        release.countDown();
+        recorder.await();
+
+        assertEquals(2, recorder.failed.get());
+        assertNull(cache.get("A"));
+    }
+
+    @Test
+    public void doesNotCacheErrorResponses() throws InterruptedException {
+        status = 500;
+        Recorder recorder = new Recorder(1);
+        fetcher.fetch("A", recorder);
+
+        release.countDown();
+        recorder.await();
+
+        assertNotNull(recorder.notCached.get("A"));
+        assertNull(cache.get("A"));
+    }
+
+    private static class Recorder implements EtaFetcher.Listener {
+
+        final Map<String, AtomicInteger> cached = new ConcurrentHashMap<String, AtomicInteger>();
+        final Map<String, AtomicInteger> notCached = new ConcurrentHashMap<String, AtomicInteger>();
+        final AtomicInteger failed = new AtomicInteger();
+        final CountDownLatch done;
+
+        Recorder(int count) {
+            done = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onResponse(String stopId, FetchEngine.Response response, boolean cached) {
+            Map<String, AtomicInteger> counts = cached ? this.cached : notCached;
+            counts.putIfAbsent(stopId, new AtomicInteger());
+            counts.get(stopId).incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(String stopId, IOException e) {
+            failed.incrementAndGet();
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FetchEngineTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private FetchEngine engine;
+
+    @After
+    public void tearDown() {
+        if (engine != null) {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void deliversResponse() throws InterruptedException {
+        engine = new FetchEngine(new FetchEngine.Transport() {
+            @Override
+            public FetchEngine.Response execute(String method, String url, Map<String, String> headers,
+                                                int timeoutMillis) {
+                assertEquals("GET", method);
+                assertEquals(5000, timeoutMillis);
+                return new FetchEngine.Response(200, Collections.singletonMap("ETag", "\"1\""),
+                        url.getBytes(), 12);
+            }
+        }, 2, 5000, DIRECT);
+
+        Recorder recorder = new Recorder(1);
+        engine.fetch("https://example.com/eta/1", recorder);
+        recorder.await();
+
+        FetchEngine.Response response = recorder.responses.get("https://example.com/eta/1");
+        assertTrue(response.isSuccessful());
+        assertEquals("\"1\"", response.getHeader("etag"));
+        assertEquals("https://example.com/eta/1", new String(response.getBody()));
+        assertTrue(recorder.failures.isEmpty());
+    }
+
+    @Test
+    public void reportsTransportErrorsAsFailures() throws InterruptedException {
+        engine = new FetchEngine(new FetchEngine.Transport() {
+            @Override
+            public FetchEngine.Response execute(String method, String url, Map<String, String> headers,
+                                                int timeoutMillis) throws IOException {
+                if (url.endsWith("io")) {
+                    throw new IOException("refused");
+                }
+                throw new IllegalStateException("broken");
+            }
+        }, 2, 5000, DIRECT);
+
+        Recorder recorder = new Recorder(2);
+        engine.fetch("https://example.com/io", recorder);
+        engine.fetch("https://example.com/runtime", recorder);
+        recorder.await();
+
+        assertEquals("refused", recorder.failures.get("https://example.com/io").getMessage());
+        assertTrue(recorder.failures.get("https://example.com/runtime").getCause() instanceof IllegalStateException);
+        assertTrue(recorder.responses.isEmpty());
+    }
+
+    @Test
+    public void runsAtMostMaxConcurrentFetches() throws InterruptedException {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        engine = new FetchEngine(new FetchEngine.Transport() {
+            @Override
+            public FetchEngine.Response execute(String method, String url, Map<String, String> headers,
+                                                int timeoutMillis) throws IOException {
+                int now = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), now));
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+                return new FetchEngine.Response(204, Collections.<String, String>emptyMap(), new byte[0], 5);
+            }
+        }, 3, 5000, DIRECT);
+
+        Recorder recorder = new Recorder(30);
+        for (int i = 0; i < 30; i++) {
+            engine.fetch("https://example.com/eta/" + i, recorder);
+        }
+        recorder.await();
+
+        assertEquals(30, recorder.responses.size());
+        assertTrue(maxRunning.get() <= 3);
+        assertFalse(new FetchEngine.Response(404, Collections.<String, String>emptyMap(), null, 0).isSuccessful());
+    }
+
+    private static class Recorder implements FetchEngine.Callback {
+
+        final Map<String, FetchEngine.Response> responses = new ConcurrentHashMap<String, FetchEngine.Response>();
+        final Map<String, IOException> failures = new ConcurrentHashMap<String, IOException>();
+        final CountDownLatch done;
+
+        Recorder(int count) {
+            done = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onResponse(String url, FetchEngine.Response response) {
+            responses.put(url, response);
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(String url, IOException e) {
+            failures.put(url, e);
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
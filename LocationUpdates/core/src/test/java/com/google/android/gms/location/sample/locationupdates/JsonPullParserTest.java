@@ -0,0 +1,159 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonPullParserTest {
+
+    private static final String DOCUMENT = "{\"type\": \"Stop\", \"data\": [{\"seq\": 12, \"lat\": \"22.345415\","
+            + " \"eta\": null, \"ok\": true}, -3.5]}";
+
+    @Test
+    public void readsTokens() throws IOException {
+        // a buffer of a few bytes refills in the middle of every token
+        for (int bufferSize : new int[]{3, 8192}) {
+            JsonPullParser parser = parser(DOCUMENT, bufferSize);
+
+            assertEquals(JsonPullParser.BEGIN_OBJECT, parser.next());
+            assertName(parser, "type");
+            assertEquals(JsonPullParser.STRING, parser.next());
+            assertEquals("Stop", parser.getString());
+            assertName(parser, "data");
+            assertEquals(JsonPullParser.BEGIN_ARRAY, parser.next());
+            assertEquals(JsonPullParser.BEGIN_OBJECT, parser.next());
+
+            assertName(parser, "seq");
+            assertEquals(JsonPullParser.NUMBER, parser.next());
+            assertEquals(12, parser.getInt());
+
+            assertName(parser, "lat");
+            assertEquals(JsonPullParser.STRING, parser.next());
+            assertEquals(22.345415, parser.getDouble(), 0);
+
+            assertName(parser, "eta");
+            assertEquals(JsonPullParser.LITERAL, parser.next());
+            assertTrue(parser.isNull());
+
+            assertName(parser, "ok");
+            assertEquals(JsonPullParser.LITERAL, parser.next());
+            assertFalse(parser.isNull());
+            assertEquals("true", parser.getText().toString());
+
+            assertEquals(JsonPullParser.END_OBJECT, parser.next());
+            assertEquals(JsonPullParser.NUMBER, parser.next());
+            assertEquals(-3.5, parser.getDouble(), 0);
+            assertEquals(JsonPullParser.END_ARRAY, parser.next());
+            assertEquals(JsonPullParser.END_OBJECT, parser.next());
+            assertEquals(JsonPullParser.END_DOCUMENT, parser.next());
+            assertEquals(DOCUMENT.length(), parser.getPosition());
+        }
+    }
+
+    @Test
+    public void decodesEscapesAndUtf8() throws IOException {
+        JsonPullParser parser = parser("[\"a\\\"b\\\\c\\/d\\n\\u00e9\\u4E2D\", \"\u7ad9\u982d\", \"\ud83d\ude8c\"]", 4);
+
+        assertEquals(JsonPullParser.BEGIN_ARRAY, parser.next());
+        assertEquals(JsonPullParser.STRING, parser.next());
+        assertEquals("a\"b\\c/d\n\u00e9\u4e2d", parser.getString());
+        assertEquals(JsonPullParser.STRING, parser.next());
+        assertEquals("\u7ad9\u982d", parser.getString());
+        assertEquals(JsonPullParser.STRING, parser.next());
+        assertEquals("\ud83d\ude8c", parser.getString());
+        assertEquals(JsonPullParser.END_ARRAY, parser.next());
+    }
+
+    @Test
+    public void convertsNumbers() throws IOException {
+        JsonPullParser parser = parser("[0.1, 114.1234567, -0, 1e3, 12345678901234567, 9223372036854775807]", 8192);
+
+        parser.next();
+        parser.next();
+        assertEquals(0.1, parser.getDouble(), 0);
+        parser.next();
+        assertEquals(114.1234567, parser.getDouble(), 0);
+        parser.next();
+        assertEquals(0, parser.getLong());
+        parser.next();
+        assertEquals(1000, parser.getDouble(), 0);
+        parser.next();
+        assertEquals(12345678901234567.0, parser.getDouble(), 0);
+        parser.next();
+        assertEquals(Long.MAX_VALUE, parser.getLong());
+    }
+
+    @Test
+    public void skipsNestedValues() throws IOException {
+        JsonPullParser parser = parser("{\"skip\": {\"a\": [1, {\"b\": \"]}\"}], \"c\": {}}, \"keep\": 7}", 5);
+
+        assertEquals(JsonPullParser.BEGIN_OBJECT, parser.next());
+        assertName(parser, "skip");
+        parser.skipValue();
+        assertName(parser, "keep");
+        assertEquals(JsonPullParser.NUMBER, parser.next());
+        assertEquals(7, parser.getInt());
+        assertEquals(JsonPullParser.END_OBJECT, parser.next());
+    }
+
+    @Test
+    public void skipsScalarValues() throws IOException {
+        JsonPullParser parser = parser("{\"skip\": \"text\", \"keep\": 7}", 8192);
+
+        parser.next();
+        assertName(parser, "skip");
+        parser.skipValue();
+        assertName(parser, "keep");
+    }
+
+    @Test
+    public void failsOnUnterminatedString() throws IOException {
+        JsonPullParser parser = parser("[\"abc", 8192);
+        parser.next();
+        try {
+            parser.next();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void failsOnUnbalancedClose() throws IOException {
+        JsonPullParser parser = parser("[]]", 8192);
+        parser.next();
+        parser.next();
+        try {
+            parser.next();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void failsOnTruncatedValueBeingSkipped() throws IOException {
+        JsonPullParser parser = parser("{\"skip\": [1, 2", 8192);
+        parser.next();
+        parser.next();
+        try {
+            parser.skipValue();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private static void assertName(JsonPullParser parser, String name) throws IOException {
+        assertEquals(JsonPullParser.NAME, parser.next());
+        assertTrue(parser.nameEquals(name));
+    }
+
+    private static JsonPullParser parser(String json, int bufferSize) throws UnsupportedEncodingException {
+        return new JsonPullParser(new ByteArrayInputStream(json.getBytes("UTF-8")), bufferSize);
+    }
+}
@@ -0,0 +1,148 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LastResultSnapshotTest {
+
+    private static final long NOW = 1559375285000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final EtaDictionary dictionary = new EtaDictionary();
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+        File file = new File(folder.getRoot(), "result/last.bin");
+        List<BusStop> stops = stops();
+        List<RefreshEngine.EtaGroup> groups = groups(stops);
+        LastResultSnapshot.write(file, stops, groups, NOW - 5000, NOW);
+
+        LastResultSnapshot snapshot = LastResultSnapshot.read(file, dictionary);
+
+        assertNotNull(snapshot);
+        assertEquals(NOW, snapshot.getSavedTime());
+        assertEquals(NOW - 5000, snapshot.getGeneratedTime());
+
+        assertEquals(stops.size(), snapshot.getStops().size());
+        for (int i = 0; i < stops.size(); i++) {
+            BusStop expected = stops.get(i);
+            BusStop read = snapshot.getStops().get(i);
+            assertEquals(expected.getStopID(), read.getStopID());
+            assertEquals(expected.getNameEn(), read.getNameEn());
+            assertEquals(expected.getNameTc(), read.getNameTc());
+            assertEquals(expected.getNameSc(), read.getNameSc());
+            assertEquals(expected.getLat(), read.getLat(), 0);
+            assertEquals(expected.getLon(), read.getLon(), 0);
+            assertEquals(expected.getDistance(), read.getDistance(), 0);
+        }
+
+        assertEquals(groups.size(), snapshot.getGroups().size());
+        for (int i = 0; i < groups.size(); i++) {
+            RefreshEngine.EtaGroup expected = groups.get(i);
+            RefreshEngine.EtaGroup read = snapshot.getGroups().get(i);
+            assertEquals(expected.getStop().getStopID(), read.getStop().getStopID());
+            assertEquals(expected.getEtas().size(), read.getEtas().size());
+            for (int j = 0; j < expected.getEtas().size(); j++) {
+                assertTrue(expected.getEtas().get(j).hasSameContents(read.getEtas().get(j)));
+            }
+        }
+    }
+
+    @Test
+    public void readsEmptyResult() throws IOException {
+        File file = new File(folder.getRoot(), "last.bin");
+        LastResultSnapshot.write(file, Collections.<BusStop>emptyList(),
+                Collections.<RefreshEngine.EtaGroup>emptyList(), DateUtil.NO_TIME, NOW);
+
+        LastResultSnapshot snapshot = LastResultSnapshot.read(file, dictionary);
+
+        assertEquals(0, snapshot.getStops().size());
+        assertEquals(0, snapshot.getGroups().size());
+        assertEquals(DateUtil.NO_TIME, snapshot.getGeneratedTime());
+    }
+
+    @Test
+    public void ignoresMissingOrCorruptFile() throws IOException {
+        File file = new File(folder.getRoot(), "last.bin");
+        assertNull(LastResultSnapshot.read(file, dictionary));
+
+        List<BusStop> stops = stops();
+        LastResultSnapshot.write(file, stops, groups(stops), NOW, NOW);
+        long length = file.length();
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(length - 3);
+        randomAccessFile.close();
+        assertNull(LastResultSnapshot.read(file, dictionary));
+
+        // a string count far beyond the file
+        LastResultSnapshot.write(file, stops, groups(stops), NOW, NOW);
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(24);
+        randomAccessFile.writeInt(Integer.MAX_VALUE);
+        randomAccessFile.close();
+        assertNull(LastResultSnapshot.read(file, dictionary));
+
+        // another format
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(0);
+        randomAccessFile.writeInt(0);
+        randomAccessFile.close();
+        assertNull(LastResultSnapshot.read(file, dictionary));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesGroupOfUnlistedStop() throws IOException {
+        List<BusStop> stops = stops();
+        LastResultSnapshot.write(new File(folder.getRoot(), "last.bin"), stops.subList(1, 2), groups(stops),
+                NOW, NOW);
+    }
+
+    private static List<BusStop> stops() {
+        return Arrays.asList(
+                new BusStop("A", "Alpha", "\u7ad9\u982d", null, 22.3010, 114.1710, 0.0001),
+                new BusStop("B", "Bravo", "B", "B", 22.3120, 114.1820, 0.0012));
+    }
+
+    private List<RefreshEngine.EtaGroup> groups(List<BusStop> stops) {
+        ArrayList<StopEta> etas = new ArrayList<StopEta>();
+        etas.add(eta("1A", "O", NOW + 60 * 1000, ""));
+        etas.add(eta("2", "I", DateUtil.NO_TIME, "Last Bus"));
+
+        ArrayList<RefreshEngine.EtaGroup> groups = new ArrayList<RefreshEngine.EtaGroup>();
+        groups.add(new RefreshEngine.EtaGroup(stops.get(0), etas));
+        groups.add(new RefreshEngine.EtaGroup(stops.get(1), new ArrayList<StopEta>()));
+        return groups;
+    }
+
+    private StopEta eta(String route, String dir, long time, String rmkTc) {
+        StopEta eta = new StopEta(dictionary);
+        eta.setCo("KMB");
+        eta.setRoute(route);
+        eta.setDir(dir);
+        eta.setServiceType(1);
+        eta.setSeq(12);
+        eta.setDestTc("\u5c16\u6c99\u5480");
+        eta.setEtaSeq(1);
+        eta.setEta(time);
+        eta.setRmkTc(rmkTc);
+        eta.setDataTimestamp(NOW);
+        return eta;
+    }
+}
@@ -0,0 +1,104 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NearestStopTrackerTest {
+
+    private static final int STOPS = 2000;
+    private static final int COUNT = 20;
+    private static final int STEPS = 20000;
+
+    // a few kilometers square around Mong Kok, about as dense as the real catalog
+    private static final double LAT = 22.31;
+    private static final double LON = 114.17;
+    private static final double SIZE = 0.04;
+
+    private StopTable table;
+    private StopIndex index;
+    private List<BusStop> tracked;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(18);
+        table = new StopTable();
+        for (int i = 0; i < STOPS; i++) {
+            table.add("S" + i, "Stop " + i, "Stop " + i, "Stop " + i,
+                    LAT + random.nextDouble() * SIZE, LON + random.nextDouble() * SIZE);
+        }
+        index = new StopIndex(table);
+    }
+
+    @Test
+    public void ranksAndMarginMatchBruteForce() {
+        NearestStopTracker tracker = new NearestStopTracker(table, index, COUNT, 150,
+                new NearestStopTracker.Listener() {
+                    @Override
+                    public void onNearestStopChanged(ArrayList<BusStop> nearestStops) {
+                        tracked = nearestStops;
+                    }
+                });
+
+        Random random = new Random(19);
+        double lat = LAT + SIZE / 2;
+        double lon = LON + SIZE / 2;
+
+        for (int step = 0; step < STEPS; step++) {
+            if (random.nextInt(100) == 0) {
+                // a jump, e.g. after the location was lost for a while
+                lat = LAT + random.nextDouble() * SIZE;
+                lon = LON + random.nextDouble() * SIZE;
+            } else {
+                // up to about 20 m
+                lat += (random.nextDouble() - 0.5) * 0.0004;
+                lon += (random.nextDouble() - 0.5) * 0.0004;
+            }
+
+            tracker.update(lat, lon);
+            double[] distances = sortedDistances(lat, lon);
+
+            assertEquals(COUNT, tracked.size());
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals("step " + step + " rank " + i, distances[i],
+                        StopIndex.distance(tracked.get(i).getLat(), tracked.get(i).getLon(), lat, lon), 0);
+            }
+
+            double margin = (distances[COUNT] - distances[COUNT - 1]) / 2 * StopIndex.METERS_PER_DEGREE;
+            assertTrue("step " + step, tracker.getMembershipMargin() <= margin + 1e-9);
+        }
+    }
+
+    @Test
+    public void findNearestMatchesBruteForce() {
+        Random random = new Random(20);
+        for (int query = 0; query < 1000; query++) {
+            double lat = LAT + random.nextDouble() * SIZE;
+            double lon = LON + random.nextDouble() * SIZE;
+
+            List<BusStop> nearest = index.findNearest(lat, lon, COUNT);
+            double[] distances = sortedDistances(lat, lon);
+
+            assertEquals(COUNT, nearest.size());
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals(distances[i], nearest.get(i).getDistance(), 0);
+            }
+        }
+    }
+
+    private double[] sortedDistances(double lat, double lon) {
+        double[] distances = new double[table.size()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = StopIndex.distance(table.getLat(i), table.getLon(i), lat, lon);
+        }
+        Arrays.sort(distances);
+        return distances;
+    }
+}
@@ -0,0 +1,302 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RefreshEngineTest {
+
+    // stops every 0.002 degrees north from here, about 220m apart
+    private static final double LAT = 22.30;
+    private static final double LON = 114.17;
+    private static final int STOPS = 60;
+
+    private static final double NORTH_END = LAT + (STOPS - 1) * 0.002;
+
+    // 2019-06-01T07:48:05Z
+    private static final long TIME = 1559375285000L;
+    private static final long MINUTE = 60 * 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // results are run on the test thread when drained
+    private final ConcurrentLinkedQueue<Runnable> results = new ConcurrentLinkedQueue<Runnable>();
+    private final Executor resultExecutor = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            results.add(runnable);
+        }
+    };
+
+    private final List<List<BusStop>> ranked = new ArrayList<List<BusStop>>();
+    private final List<Double> margins = new ArrayList<Double>();
+    private final List<Exception> errors = new ArrayList<Exception>();
+    private final List<List<RefreshEngine.EtaGroup>> shown = new ArrayList<List<RefreshEngine.EtaGroup>>();
+    private final Set<String> fetched = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // the first catalog load waits here, holding up the engine thread
+    private final CountDownLatch loading = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private volatile long now = System.currentTimeMillis();
+
+    private DirectoryFileStore directory;
+    private RefreshEngine engine;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new DirectoryFileStore(folder.getRoot());
+        writeCatalog(directory.getFile(RefreshEngine.BUS_STOP_JSON_FILE_NAME));
+
+        FileStore files = new FileStore() {
+            @Override
+            public File getFile(String name) {
+                if (name.equals(RefreshEngine.BUS_STOP_JSON_FILE_NAME) && loading.getCount() > 0) {
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return directory.getFile(name);
+            }
+        };
+
+        Clock clock = new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return now;
+            }
+        };
+
+        engine = new RefreshEngine(files, clock, new FetchEngine.Transport() {
+            @Override
+            public FetchEngine.Response execute(String method, String url, Map<String, String> headers,
+                                                int timeoutMillis) {
+                fetched.add(url.substring(RefreshEngine.BUS_STOP_ETA_JSON_URL.length()));
+                return new FetchEngine.Response(200, Collections.<String, String>emptyMap(),
+                        "{\"data\": []}".getBytes(), 1);
+            }
+        }, resultExecutor, new RefreshEngine.Listener() {
+            @Override
+            public void onCatalogLoaded(String generatedTimestamp, StopCatalogDiff diff) {
+            }
+
+            @Override
+            public void onStopsRanked(List<BusStop> stops) {
+                ranked.add(stops);
+            }
+
+            @Override
+            public void onStopMargin(double marginMeters) {
+                margins.add(marginMeters);
+            }
+
+            @Override
+            public void onFetchProgress(List<RefreshEngine.FetchProgress> progress) {
+            }
+
+            @Override
+            public void onEtasReady(List<RefreshEngine.EtaGroup> groups, long generatedTime) {
+                shown.add(groups);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                errors.add(e);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        engine.shutdown();
+    }
+
+    @Test
+    public void skipsSupersededGenerations() throws InterruptedException {
+        engine.setAutoFetch(true);
+        long ranks = PipelineMetrics.NEAREST_STOPS.getCount();
+
+        engine.refresh(LAT, LON);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        // both arrive while the first refresh is still loading the catalog
+        engine.onLocation(LAT + 0.05, LON, Double.NaN, Double.NaN);
+        engine.onLocation(NORTH_END, LON, Double.NaN, Double.NaN);
+        release.countDown();
+
+        waitFor(new Condition() {
+            @Override
+            public boolean met() {
+                return fetched.size() >= 20;
+            }
+        });
+        drain();
+
+        // the first ranking ran but was superseded, the middle one never started
+        assertEquals(2, PipelineMetrics.NEAREST_STOPS.getCount() - ranks);
+        assertEquals(1, ranked.size());
+        assertEquals(1, margins.size());
+        assertEquals("S" + (STOPS - 1), ranked.get(0).get(0).getStopID());
+        // the superseded refresh was carried over and fetched the stops of the last location
+        assertEquals(20, fetched.size());
+        assertTrue(fetched.contains("S" + (STOPS - 1)));
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void dropsResultsOfSupersededGenerations() throws InterruptedException {
+        final long ranks = PipelineMetrics.NEAREST_STOPS.getCount();
+        release.countDown();
+
+        engine.refresh(LAT, LON);
+        waitForRanks(ranks + 1);
+        // the results of the first ranking are still queued when the next fix arrives
+        engine.onLocation(NORTH_END, LON, Double.NaN, Double.NaN);
+        waitForRanks(ranks + 2);
+        drain();
+
+        assertEquals(1, ranked.size());
+        assertEquals(1, margins.size());
+        assertEquals("S" + (STOPS - 1), ranked.get(0).get(0).getStopID());
+        assertTrue(fetched.isEmpty());
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void showsSavedEtasNewerThanStaleCache() throws InterruptedException, IOException {
+        engine.clearEtas();
+        release.countDown();
+        final long ranks = PipelineMetrics.NEAREST_STOPS.getCount();
+        engine.refresh(LAT, LON);
+        waitForRanks(ranks + 1);
+        drain();
+
+        File file = directory.getFile(RefreshEngine.STOP_ETA_JSON_FILE_NAME + "S0");
+        writeEta(file, "1A", TIME);
+        now = TIME + 10 * MINUTE;
+        assertEquals("1A", showS0());
+
+        // the revalidation of the first show is newer than the file and stale by now
+        now = TIME + 12 * MINUTE;
+        assertEquals("", showS0());
+
+        // the background prefetch saved newer ETAs than the stale cache
+        writeEta(file, "2", TIME + 20 * MINUTE);
+        now = TIME + 30 * MINUTE;
+        assertEquals("2", showS0());
+        assertTrue(errors.isEmpty());
+    }
+
+    /**
+     * @return the routes shown for the closest stop.
+     */
+    private String showS0() throws InterruptedException {
+        final int count = shown.size();
+        engine.showEtas();
+        waitFor(new Condition() {
+            @Override
+            public boolean met() {
+                drain();
+                return shown.size() > count;
+            }
+        });
+        drain();
+
+        RefreshEngine.EtaGroup group = shown.get(shown.size() - 1).get(0);
+        assertEquals("S0", group.getStop().getStopID());
+        StringBuilder routes = new StringBuilder();
+        for (StopEta eta : group.getEtas()) {
+            routes.append(eta.getRoute());
+        }
+        return routes.toString();
+    }
+
+    private interface Condition {
+        boolean met();
+    }
+
+    private void waitForRanks(final long count) throws InterruptedException {
+        waitFor(new Condition() {
+            @Override
+            public boolean met() {
+                return PipelineMetrics.NEAREST_STOPS.getCount() >= count;
+            }
+        });
+    }
+
+    private void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.met()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("timed out");
+            }
+            Thread.sleep(10);
+        }
+        // let the engine finish posting what it was doing
+        Thread.sleep(100);
+    }
+
+    private void drain() {
+        Runnable result;
+        while ((result = results.poll()) != null) {
+            result.run();
+        }
+    }
+
+    private static void writeEta(File file, String route, long modified) throws IOException {
+        String json = "{\"type\": \"StopETA\", \"generated_timestamp\": \"2019-06-01T15:48:05+08:00\","
+                + " \"data\": [{\"co\": \"KMB\", \"route\": \"" + route + "\", \"dir\": \"O\","
+                + " \"service_type\": 1, \"seq\": 1, \"dest_tc\": \"T\", \"eta_seq\": 1,"
+                + " \"eta\": \"2019-06-01T16:30:00+08:00\", \"rmk_tc\": \"\"}]}";
+
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(json.getBytes("UTF-8"));
+        out.close();
+        assertTrue(file.setLastModified(modified));
+    }
+
+    private static void writeCatalog(File file) throws IOException {
+        StringBuilder json = new StringBuilder("{\"type\": \"StopList\", \"generated_timestamp\": "
+                + "\"2019-06-01T15:48:05+08:00\", \"data\": [");
+        for (int i = 0; i < STOPS; i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            json.append("{\"stop\": \"S").append(i).append("\", \"name_en\": \"Stop ").append(i)
+                    .append("\", \"name_tc\": \"T").append(i).append("\", \"name_sc\": \"S").append(i)
+                    .append("\", \"lat\": \"").append(LAT + i * 0.002)
+                    .append("\", \"long\": \"").append(LON).append("\"}");
+        }
+        json.append("]}");
+
+        assertTrue(file.getParentFile().mkdirs());
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(json.toString().getBytes("UTF-8"));
+        out.close();
+    }
+}
@@ -0,0 +1,83 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StopCatalogDiffTest {
+
+    @Test
+    public void identicalCatalogsHaveNoDifference() {
+        StopCatalogDiff diff = StopCatalogDiff.compute(catalog(), catalog());
+
+        assertTrue(diff.isEmpty());
+        assertEquals("0 added, 0 removed, 0 changed", diff.toString());
+    }
+
+    @Test
+    public void findsAddedRemovedAndChangedStops() {
+        StopTable fresh = new StopTable();
+        // A removed, B moved, C renamed, D unchanged, E added
+        fresh.add("B", "Bravo", "B", "B", 22.3020, 114.1720);
+        fresh.add("C", "Charlie Terminus", "C", "C", 22.3030, 114.1730);
+        fresh.add("D", "Delta", "D", "D", 22.3040, 114.1740);
+        fresh.add("E", "Echo", "E", "E", 22.3050, 114.1750);
+
+        StopCatalogDiff diff = StopCatalogDiff.compute(catalog(), fresh);
+
+        assertFalse(diff.isEmpty());
+        assertEquals(1, diff.getAddedCount());
+        assertEquals(1, diff.getRemovedCount());
+        assertEquals(2, diff.getChangedCount());
+    }
+
+    @Test
+    public void applyUpdatesTableAndIndex() {
+        StopTable table = catalog();
+        StopIndex index = new StopIndex(table);
+
+        StopTable fresh = new StopTable();
+        fresh.add("B", "Bravo", "B", "B", 22.3020, 114.1720);
+        fresh.add("C", "Charlie Terminus", "C", "C", 22.3030, 114.1730);
+        fresh.add("D", "Delta", "D", "D", 22.3040, 114.1740);
+        // outside the grid of the old catalog
+        fresh.add("E", "Echo", "E", "E", 22.4000, 114.3000);
+
+        StopCatalogDiff.compute(table, fresh).apply(table, index);
+
+        assertEquals(4, table.size());
+        assertEquals(-1, table.indexOf("A"));
+        assertNull(index.findById("A"));
+
+        BusStop b = index.findById("B");
+        assertEquals(22.3020, b.getLat(), 0);
+        assertEquals(114.1720, b.getLon(), 0);
+        assertEquals("Charlie Terminus", index.findById("C").getNameEn());
+
+        // moved and added stops are found at their new place, and not at the old places of A and B
+        assertNearest(index, "B", 22.3020, 114.1720);
+        assertNearest(index, "E", 22.4000, 114.3000);
+        assertNearest(index, "B", 22.3010, 114.1710);
+        assertNearest(index, "D", 22.3120, 114.1820);
+        assertTrue(StopCatalogDiff.compute(table, fresh).isEmpty());
+    }
+
+    private static void assertNearest(StopIndex index, String stopId, double lat, double lon) {
+        List<BusStop> nearest = index.findNearest(lat, lon, 1);
+        assertEquals(stopId, nearest.get(0).getStopID());
+    }
+
+    private static StopTable catalog() {
+        StopTable table = new StopTable();
+        table.add("A", "Alpha", "A", "A", 22.3010, 114.1710);
+        table.add("B", "Bravo", "B", "B", 22.3120, 114.1820);
+        table.add("C", "Charlie", "C", "C", 22.3030, 114.1730);
+        table.add("D", "Delta", "D", "D", 22.3040, 114.1740);
+        return table;
+    }
+}
@@ -0,0 +1,146 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class StopCatalogSnapshotTest {
+
+    // offset of the grid rows in the header
+    private static final int ROWS_OFFSET = 36;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File source;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        source = folder.newFile("stops.json");
+        FileOutputStream out = new FileOutputStream(source);
+        out.write("{\"data\": []}".getBytes("UTF-8"));
+        out.close();
+
+        file = new File(folder.getRoot(), "stops.bin");
+    }
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+        StopTable table = catalog();
+        StopIndex index = new StopIndex(table);
+        StopCatalogSnapshot.write(file, source, table, index, "2019-06-01T15:48:05+08:00");
+
+        StopCatalogSnapshot snapshot = StopCatalogSnapshot.open(file, source);
+
+        assertNotNull(snapshot);
+        assertEquals("2019-06-01T15:48:05+08:00", snapshot.getGeneratedTimestamp());
+        StopTable read = snapshot.getTable();
+        assertEquals(table.size(), read.size());
+        assertEquals(table.nameCount(), read.nameCount());
+        for (int i = 0; i < table.size(); i++) {
+            assertEquals(table.getStopID(i), read.getStopID(i));
+            assertEquals(table.getLat(i), read.getLat(i), 0);
+            assertEquals(table.getLon(i), read.getLon(i), 0);
+            assertEquals(table.getNameEn(i), read.getNameEn(i));
+            assertEquals(table.getNameTc(i), read.getNameTc(i));
+            assertEquals(table.getNameSc(i), read.getNameSc(i));
+        }
+        assertEquals(2, read.indexOf("C"));
+        assertEquals(-1, read.indexOf("Z"));
+
+        StopIndex readIndex = snapshot.getIndex();
+        for (double[] point : new double[][]{{22.3000, 114.1700}, {22.3125, 114.1825}, {22.2, 114.4}}) {
+            assertEquals(stopIds(index.findNearest(point[0], point[1], 3)),
+                    stopIds(readIndex.findNearest(point[0], point[1], 3)));
+        }
+    }
+
+    @Test
+    public void mappedCatalogTakesUpdates() throws IOException {
+        StopTable table = catalog();
+        StopCatalogSnapshot.write(file, source, table, new StopIndex(table), null);
+        StopCatalogSnapshot snapshot = StopCatalogSnapshot.open(file, source);
+        assertNull(snapshot.getGeneratedTimestamp());
+
+        StopTable fresh = new StopTable();
+        fresh.add("B", "Bravo", "B", "B", 22.3020, 114.1720);
+        fresh.add("C", "Charlie", "C", null, 22.3030, 114.1730);
+        fresh.add("D", "Delta", "D", "D", 22.3040, 114.1740);
+        fresh.add("E", "Echo", "E", "E", 22.4000, 114.3000);
+        StopCatalogDiff.compute(snapshot.getTable(), fresh).apply(snapshot.getTable(), snapshot.getIndex());
+
+        assertEquals(4, snapshot.getTable().size());
+        assertNull(snapshot.getIndex().findById("A"));
+        assertEquals("Charlie", snapshot.getIndex().findById("C").getNameEn());
+        assertEquals("B", snapshot.getIndex().findNearest(22.3020, 114.1720, 1).get(0).getStopID());
+        assertEquals("E", snapshot.getIndex().findNearest(22.4000, 114.3000, 1).get(0).getStopID());
+    }
+
+    @Test
+    public void ignoresSnapshotOfAnotherSource() throws IOException {
+        StopTable table = catalog();
+        StopCatalogSnapshot.write(file, source, table, new StopIndex(table), null);
+
+        FileOutputStream out = new FileOutputStream(source, true);
+        out.write(' ');
+        out.close();
+
+        assertNull(StopCatalogSnapshot.open(file, source));
+    }
+
+    @Test
+    public void ignoresCorruptHeader() throws IOException {
+        StopTable table = catalog();
+        StopCatalogSnapshot.write(file, source, table, new StopIndex(table), null);
+
+        // rows * columns overflows an int
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(ROWS_OFFSET);
+        randomAccessFile.writeInt(0x10000);
+        randomAccessFile.writeInt(0x10000);
+        randomAccessFile.close();
+
+        assertNull(StopCatalogSnapshot.open(file, source));
+    }
+
+    @Test
+    public void ignoresTruncatedFile() throws IOException {
+        StopTable table = catalog();
+        StopCatalogSnapshot.write(file, source, table, new StopIndex(table), null);
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(randomAccessFile.length() - 4);
+        randomAccessFile.close();
+
+        assertNull(StopCatalogSnapshot.open(file, source));
+    }
+
+    private static String stopIds(List<BusStop> stops) {
+        StringBuilder builder = new StringBuilder();
+        for (BusStop stop : stops) {
+            builder.append(stop.getStopID()).append(' ');
+        }
+        return builder.toString();
+    }
+
+    private static StopTable catalog() {
+        StopTable table = new StopTable();
+        table.add("A", "Alpha", "\u7ad9\u982d", "A", 22.3010, 114.1710);
+        table.add("B", "Bravo", "B", "B", 22.3120, 114.1820);
+        table.add("C", "Charlie", "C", null, 22.3030, 114.1730);
+        table.add("D", "Delta", "D", "D", 22.3040, 114.1740);
+        return table;
+    }
+}
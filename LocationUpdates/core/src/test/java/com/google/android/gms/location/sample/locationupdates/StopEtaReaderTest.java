@@ -0,0 +1,128 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StopEtaReaderTest {
+
+    private static final String RESPONSE = "{\"type\": \"StopETA\", \"version\": \"1.0\","
+            + " \"generated_timestamp\": \"2019-06-01T15:48:05+08:00\", \"data\": ["
+            + row("1A", "O", 1, "\"2019-06-01T15:50:00+08:00\"", "")
+            + ", " + row("1A", "O", 2, "\"2019-06-01T16:05:00+08:00\"", "")
+            + ", " + row("2", "I", 1, "\"2019-06-01T15:52:00+08:00\"", "Scheduled")
+            + ", " + row("2", "I", 2, "null", "Last Bus")
+            + "]}";
+
+    // 2019-06-01T15:48:05+08:00
+    private static final long GENERATED = 1559375285000L;
+
+    private final EtaDictionary dictionary = new EtaDictionary();
+
+    @Test
+    public void readsEveryRow() throws IOException {
+        ArrayList<StopEta> etas = new ArrayList<StopEta>();
+        long generated = StopEtaReader.read(stream(RESPONSE), new EtaQuery(EtaQuery.ALL_LANGUAGES),
+                dictionary, etas);
+
+        assertEquals(GENERATED, generated);
+        assertEquals(4, etas.size());
+
+        StopEta first = etas.get(0);
+        assertEquals("KMB", first.getCo());
+        assertEquals("1A", first.getRoute());
+        assertEquals(StopEta.DIR_OUTBOUND, first.getDir());
+        assertEquals(1, first.getServiceType());
+        assertEquals(12, first.getSeq());
+        assertEquals(1, first.getEtaSeq());
+        assertEquals("Star Ferry", first.getDestEn());
+        assertEquals("\u5c16\u6c99\u5480", first.getDestTc());
+        assertEquals("\u5c16\u6c99\u5480", first.getDestSc());
+        assertEquals(GENERATED + 115 * 1000, first.getEta());
+        assertEquals(GENERATED, first.getDataTimestamp());
+
+        assertEquals(DateUtil.NO_TIME, etas.get(3).getEta());
+        assertEquals("Last Bus", etas.get(3).getRmkEn());
+    }
+
+    @Test
+    public void keepsOnlyAskedLanguages() throws IOException {
+        ArrayList<StopEta> etas = new ArrayList<StopEta>();
+        StopEtaReader.read(stream(RESPONSE), new EtaQuery(EtaQuery.LANGUAGE_TC), dictionary, etas);
+
+        assertEquals(4, etas.size());
+        for (StopEta eta : etas) {
+            assertEquals("\u5c16\u6c99\u5480", eta.getDestTc());
+            assertNull(eta.getDestEn());
+            assertNull(eta.getDestSc());
+            assertNull(eta.getRmkEn());
+        }
+    }
+
+    @Test
+    public void keepsOnlyAskedEtaSeqs() throws IOException {
+        ArrayList<StopEta> etas = new ArrayList<StopEta>();
+        StopEtaReader.read(stream(RESPONSE), new EtaQuery(EtaQuery.ALL_LANGUAGES).setEtaSeqs(1),
+                dictionary, etas);
+
+        assertEquals(2, etas.size());
+        assertEquals("1A", etas.get(0).getRoute());
+        assertEquals("2", etas.get(1).getRoute());
+        for (StopEta eta : etas) {
+            assertEquals(1, eta.getEtaSeq());
+        }
+    }
+
+    @Test
+    public void keepsOnlyAskedRoutes() throws IOException {
+        ArrayList<StopEta> etas = new ArrayList<StopEta>();
+        StopEtaReader.read(stream(RESPONSE), new EtaQuery(EtaQuery.ALL_LANGUAGES).setRoutes("2").setEtaSeqs(2),
+                dictionary, etas);
+
+        assertEquals(1, etas.size());
+        assertEquals("2", etas.get(0).getRoute());
+        assertEquals(StopEta.DIR_INBOUND, etas.get(0).getDir());
+        assertEquals(2, etas.get(0).getEtaSeq());
+    }
+
+    @Test
+    public void rejectsEtaSeqOutOfRange() {
+        try {
+            new EtaQuery(EtaQuery.ALL_LANGUAGES).setEtaSeqs(64);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertTrue(!new EtaQuery(EtaQuery.ALL_LANGUAGES).setEtaSeqs(1).keepsEtaSeq(-1));
+    }
+
+    @Test
+    public void failsOnMalformedResponse() {
+        for (String json : new String[]{"[]", "{\"data\": {}}"}) {
+            try {
+                StopEtaReader.read(stream(json), new EtaQuery(EtaQuery.ALL_LANGUAGES), dictionary,
+                        new ArrayList<StopEta>());
+                fail(json);
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    private static String row(String route, String dir, int etaSeq, String eta, String rmkEn) {
+        return "{\"co\": \"KMB\", \"route\": \"" + route + "\", \"dir\": \"" + dir + "\", \"service_type\": 1,"
+                + " \"seq\": 12, \"dest_tc\": \"\u5c16\u6c99\u5480\", \"dest_sc\": \"\u5c16\u6c99\u5480\","
+                + " \"dest_en\": \"Star Ferry\", \"eta_seq\": " + etaSeq + ", \"eta\": " + eta + ","
+                + " \"rmk_tc\": \"\", \"rmk_sc\": \"\", \"rmk_en\": \"" + rmkEn + "\","
+                + " \"data_timestamp\": \"2019-06-01T15:48:05+08:00\"}";
+    }
+
+    private static ByteArrayInputStream stream(String json) throws IOException {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+}
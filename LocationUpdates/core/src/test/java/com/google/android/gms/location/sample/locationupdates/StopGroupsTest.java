@@ -0,0 +1,88 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class StopGroupsTest {
+
+    private static final long NOW = 1559375285000L;
+
+    private static final long MINUTE = 60 * 1000;
+
+    private final EtaDictionary dictionary = new EtaDictionary();
+
+    @Test
+    public void mergedBusesAreKeptOnce() {
+        StopEta platformA = eta("1A", "O", 1, NOW + 5 * MINUTE);
+        StopEta platformB = eta("1A", "O", 1, NOW + 5 * MINUTE);
+        StopEta otherDirection = eta("1A", "I", 1, NOW + 3 * MINUTE);
+        StopEta nextBus = eta("1A", "O", 2, NOW + 15 * MINUTE);
+
+        ArrayList<StopEta> merged = StopGroups.mergeEtas(lists(
+                Arrays.asList(platformA, nextBus),
+                Arrays.asList(platformB, otherDirection)));
+
+        assertEquals(3, merged.size());
+        assertSame(otherDirection, merged.get(0));
+        // the first stop's row of a bus both stops report wins
+        assertSame(platformA, merged.get(1));
+        assertSame(nextBus, merged.get(2));
+    }
+
+    @Test
+    public void rowsWithoutBusGoLast() {
+        StopEta noBus = eta("2", "O", 1, DateUtil.NO_TIME);
+        StopEta later = eta("3", "O", 1, NOW + 9 * MINUTE);
+        StopEta sooner = eta("4", "O", 1, NOW + MINUTE);
+        StopEta alsoNoBus = eta("5", "O", 1, DateUtil.NO_TIME);
+
+        ArrayList<StopEta> merged = StopGroups.mergeEtas(lists(
+                Arrays.asList(noBus, later),
+                Arrays.asList(alsoNoBus, sooner)));
+
+        assertEquals(4, merged.size());
+        assertSame(sooner, merged.get(0));
+        assertSame(later, merged.get(1));
+        // sorting is stable, rows without a bus keep their order
+        assertSame(noBus, merged.get(2));
+        assertSame(alsoNoBus, merged.get(3));
+    }
+
+    @Test
+    public void mergesNothingToEmptyList() {
+        assertEquals(0, StopGroups.mergeEtas(new ArrayList<ArrayList<StopEta>>()).size());
+        assertEquals(0, StopGroups.mergeEtas(lists(Arrays.<StopEta>asList())).size());
+    }
+
+    @Test
+    public void normalizesWhiteSpace() {
+        assertEquals("", StopGroups.normalize(null));
+        assertEquals("A B", StopGroups.normalize("A B"));
+        assertEquals("A B", StopGroups.normalize("  A \t  B\n"));
+    }
+
+    private StopEta eta(String route, String dir, int etaSeq, long time) {
+        StopEta eta = new StopEta(dictionary);
+        eta.setRoute(route);
+        eta.setDir(dir);
+        eta.setServiceType(1);
+        eta.setEtaSeq(etaSeq);
+        eta.setEta(time);
+        return eta;
+    }
+
+    @SafeVarargs
+    private static ArrayList<ArrayList<StopEta>> lists(List<StopEta>... etasOfStops) {
+        ArrayList<ArrayList<StopEta>> lists = new ArrayList<ArrayList<StopEta>>();
+        for (List<StopEta> etas : etasOfStops) {
+            lists.add(new ArrayList<StopEta>(etas));
+        }
+        return lists;
+    }
+}
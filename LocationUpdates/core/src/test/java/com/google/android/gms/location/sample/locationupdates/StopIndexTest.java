@@ -0,0 +1,136 @@
+package com.google.android.gms.location.sample.locationupdates;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class StopIndexTest {
+
+    private static final int STOPS = 2000;
+
+    @Test
+    public void nearestMatchesBruteForce() {
+        Random random = new Random(1);
+        StopTable table = catalog(random);
+        StopIndex index = new StopIndex(table);
+
+        for (int query = 0; query < 200; query++) {
+            // some queries land outside the catalog
+            double lat = 22.1 + random.nextDouble() * 0.5;
+            double lon = 113.8 + random.nextDouble() * 0.6;
+            int k = 1 + random.nextInt(12);
+
+            assertNearest(index, table, lat, lon, k);
+        }
+    }
+
+    @Test
+    public void nearestReturnsWholeCatalogWhenAskedForMore() {
+        StopTable table = catalog(new Random(2));
+        StopIndex index = new StopIndex(table);
+
+        assertNearest(index, table, 22.3, 114.1, STOPS + 5);
+        assertEquals(0, new StopIndex(new StopTable()).nearest(22.3, 114.1, 5, new int[5], new double[5]));
+    }
+
+    @Test
+    public void withinRadiusMatchesBruteForce() {
+        Random random = new Random(3);
+        StopTable table = catalog(random);
+        StopIndex index = new StopIndex(table);
+
+        for (int query = 0; query < 200; query++) {
+            double lat = 22.2 + random.nextDouble() * 0.3;
+            double lon = 113.9 + random.nextDouble() * 0.4;
+            double radiusMeter = random.nextDouble() * 3000;
+
+            assertWithinRadius(index, table, lat, lon, radiusMeter);
+        }
+    }
+
+    @Test
+    public void followsTableChanges() {
+        Random random = new Random(4);
+        StopTable table = catalog(random);
+        StopIndex index = new StopIndex(table);
+
+        for (int i = 0; i < 300; i++) {
+            int stop = random.nextInt(table.size());
+            index.remove(stop);
+            int moved = table.remove(stop);
+            if (moved >= 0) {
+                index.renumber(moved, stop);
+            }
+        }
+        for (int i = 0; i < 300; i++) {
+            // a few fall outside the grid and rebuild it
+            double lat = 22.0 + random.nextDouble() * 0.7;
+            double lon = 113.7 + random.nextDouble() * 0.8;
+            index.add(table.add("N" + i, "New", "New", "New", lat, lon));
+        }
+
+        for (int query = 0; query < 100; query++) {
+            double lat = 22.1 + random.nextDouble() * 0.5;
+            double lon = 113.8 + random.nextDouble() * 0.6;
+
+            assertNearest(index, table, lat, lon, 8);
+            assertWithinRadius(index, table, lat, lon, 1500);
+        }
+    }
+
+    private static void assertNearest(StopIndex index, StopTable table, double lat, double lon, int k) {
+        double[] expected = sortedDistances(table, lat, lon);
+        expected = Arrays.copyOf(expected, Math.min(k, expected.length));
+
+        int[] stops = new int[k];
+        double[] distances = new double[k];
+        int found = index.nearest(lat, lon, k, stops, distances);
+
+        assertEquals(expected.length, found);
+        assertArrayEquals(expected, Arrays.copyOf(distances, found), 0);
+        for (int i = 0; i < found; i++) {
+            assertEquals(distances[i], index.distance(stops[i], lat, lon), 0);
+        }
+    }
+
+    private static void assertWithinRadius(StopIndex index, StopTable table, double lat, double lon,
+                                           double radiusMeter) {
+        double radius = radiusMeter / StopIndex.METERS_PER_DEGREE;
+        double[] all = sortedDistances(table, lat, lon);
+        int count = 0;
+        while (count < all.length && all[count] <= radius) {
+            count++;
+        }
+
+        int[] stops = index.withinRadius(lat, lon, radiusMeter);
+
+        double[] distances = new double[stops.length];
+        for (int i = 0; i < stops.length; i++) {
+            distances[i] = index.distance(stops[i], lat, lon);
+        }
+        assertArrayEquals(Arrays.copyOf(all, count), distances, 0);
+    }
+
+    private static double[] sortedDistances(StopTable table, double lat, double lon) {
+        double[] distances = new double[table.size()];
+        for (int i = 0; i < table.size(); i++) {
+            distances[i] = StopIndex.distance(table.getLat(i), table.getLon(i), lat, lon);
+        }
+        Arrays.sort(distances);
+        return distances;
+    }
+
+    private static StopTable catalog(Random random) {
+        StopTable table = new StopTable();
+        for (int i = 0; i < STOPS; i++) {
+            double lat = 22.2 + random.nextDouble() * 0.3;
+            double lon = 113.9 + random.nextDouble() * 0.4;
+            table.add("S" + i, "Stop " + i, "Stop " + i, "Stop " + i, lat, lon);
+        }
+        return table;
+    }
+}